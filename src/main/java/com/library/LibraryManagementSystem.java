@@ -1,6 +1,8 @@
 package com.library;
 
+import com.library.dao.ChangeFeed;
 import com.library.gui.LibraryGUI;
+import com.library.util.BackupService;
 import com.library.util.DatabaseConnection;
 
 import javax.swing.*;
@@ -24,6 +26,12 @@ public class LibraryManagementSystem {
         // Initialize database if needed
         initializeDatabase();
         
+        // Take periodic online backups if configured
+        BackupService.startScheduledBackups();
+        
+        // Pick up changes made at other desks
+        ChangeFeed.start();
+        
         // Start the GUI application
         SwingUtilities.invokeLater(() -> {
             try {
@@ -1,48 +1,102 @@
 package com.library.dao;
 
+import com.library.event.BookChangeEvent;
+import com.library.event.BookEventBus;
 import com.library.model.Book;
+import com.library.util.BookKey;
 import com.library.util.DatabaseConnection;
+import com.library.util.Shard;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import java.sql.*;
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Data Access Object for Book operations
  * Handles all database operations related to books
+ * Reads fan out to every shard; writes go to the shard that owns the book id
+ * While the database is unreachable, reads are served from the last loaded catalogue
+ * Every write also appends to the book_changes log in the same transaction for ChangeFeed
  */
 public class BookDAO {
+    private static final Comparator<Book> BY_ID = Comparator.comparingInt(Book::getId);
+    private static final int BATCH_LOOKUP_SIZE = 500;
+    private static final Comparator<String> SQLITE_NOCASE = BookDAO::compareNoCase;
+    private static final Comparator<String> MYSQL_ORDER = mysqlOrder();
+    private final Object cacheLock = new Object();
+    private TreeMap<Integer, Book> cachedCatalogue; // By id, guarded by cacheLock; null until first load
+    private List<BookChangeEvent> changesDuringRead; // Guarded by cacheLock; null unless getAllBooks is reading
+    private int cacheReadsInFlight = 0;
+    private volatile boolean offline = false;
+    private boolean outageReported = false;
+
+    /**
+     * Keep the cached catalogue in step with changes made here and at other desks,
+     * so an outage does not roll reads back to whatever getAllBooks last loaded
+     */
+    public BookDAO() {
+        BookEventBus.subscribe(this::applyToCache);
+    }
     
     /**
      * Check if a book already exists in the database
+     * Titles and authors are compared by their normalized key, so case, spacing and
+     * punctuation differences still count as the same book
      * @param title Book title
      * @param author Book author
      * @return true if book exists, false otherwise
      */
     public boolean bookExists(String title, String author) {
-        String sql = "SELECT COUNT(*) FROM books WHERE title = ? AND author = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, title);
-            stmt.setString(2, author);
-            ResultSet rs = stmt.executeQuery();
-            rs.next();
-            return rs.getInt(1) > 0;
-            
-        } catch (SQLException e) {
-            showError("Error checking book existence: " + e.getMessage());
+        return existsOn(DatabaseConnection.getShards(), BookKey.of(title, author));
+    }
+
+    /**
+     * Look a key up on some shards, unless the Bloom filter already rules it out
+     * The filter is only trusted while the change feed is keeping up; this never waits for
+     * a catch-up, so a miss just costs the query
+     */
+    private boolean existsOn(List<Shard> shards, String key) {
+        if (shards.isEmpty() || (ChangeFeed.isCurrent() && KnownKeys.isKnownAbsent(key))) {
             return false;
         }
+
+        String sql = "SELECT COUNT(*) FROM books WHERE norm_key = ?";
+        List<String> failures = new ArrayList<>();
+        List<Boolean> found = ShardFanOut.queryAll(shards, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, key);
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                return rs.getInt(1) > 0;
+            }
+        }, failures);
+
+        if (!failures.isEmpty()) {
+            showError("Error checking book existence: " + String.join("; ", failures));
+        }
+        return found.contains(Boolean.TRUE);
     }
 
     /**
      * Add a new book to the database
+     * Only the other shards are checked beforehand; the insert itself skips a duplicate
+     * on the home shard. On success the book's id is set to the generated key
      * @param book Book object to be added
      * @return true if book was added successfully, false otherwise
      */
     public boolean addBook(Book book) {
-        if (bookExists(book.getTitle(), book.getAuthor())) {
+        Shard home = DatabaseConnection.getHomeShard();
+        List<Shard> others = new ArrayList<>(DatabaseConnection.getShards());
+        others.remove(home);
+        if (existsOn(others, BookKey.of(book.getTitle(), book.getAuthor()))) {
             JOptionPane.showMessageDialog(null, 
                 "Book already exists in the library.", 
                 "Duplicate Entry", 
@@ -50,22 +104,19 @@ public class BookDAO {
             return false;
         }
 
-        String sql = "INSERT INTO books(title, author, isAvailable) VALUES (?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, book.getTitle());
-            stmt.setString(2, book.getAuthor());
-            stmt.setBoolean(3, book.isAvailable());
-            
-            int rowsAffected = stmt.executeUpdate();
-            if (rowsAffected > 0) {
+        try {
+            if (insertAll(Collections.singletonList(book)).isEmpty()) {
                 JOptionPane.showMessageDialog(null, 
-                    "Book added successfully!", 
-                    "Success", 
-                    JOptionPane.INFORMATION_MESSAGE);
-                return true;
+                    "Book already exists in the library.", 
+                    "Duplicate Entry", 
+                    JOptionPane.WARNING_MESSAGE);
+                return false;
             }
+            JOptionPane.showMessageDialog(null, 
+                "Book added successfully!", 
+                "Success", 
+                JOptionPane.INFORMATION_MESSAGE);
+            return true;
             
         } catch (SQLException e) {
             showError("Error adding book: " + e.getMessage());
@@ -73,33 +124,197 @@ public class BookDAO {
         return false;
     }
 
+    /**
+     * Add many books at once, e.g. from an import file, skipping duplicates
+     * Keys the Bloom filter rules out are not looked up at all; the rest are checked with
+     * one IN query per chunk, and all new books are inserted in a single transaction
+     * Errors are thrown rather than shown, since imports run off the event thread
+     * @param books Books to add
+     * @return The books that were added, with their ids set
+     * @throws SQLException if the duplicate check or the insert fails; nothing is added then
+     */
+    public List<Book> addBooks(List<Book> books) throws SQLException {
+        // Drop duplicates within the batch itself first
+        Map<String, Book> byKey = new LinkedHashMap<>();
+        for (Book book : books) {
+            byKey.putIfAbsent(BookKey.of(book.getTitle(), book.getAuthor()), book);
+        }
+
+        List<String> candidates = new ArrayList<>(byKey.keySet());
+        candidates.removeAll(definitelyNewKeys(candidates));
+
+        List<String> failures = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += BATCH_LOOKUP_SIZE) {
+            List<String> chunk = candidates.subList(from, Math.min(from + BATCH_LOOKUP_SIZE, candidates.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT norm_key FROM books WHERE norm_key IN (" + placeholders + ")";
+            List<List<String>> existing = ShardFanOut.queryAll(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 1, chunk.get(i));
+                    }
+                    List<String> keys = new ArrayList<>();
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        keys.add(rs.getString(1));
+                    }
+                    return keys;
+                }
+            }, failures);
+            for (List<String> keys : existing) {
+                byKey.keySet().removeAll(keys);
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new SQLException("Error checking book existence: " + String.join("; ", failures));
+        }
+        return insertAll(new ArrayList<>(byKey.values()));
+    }
+
+    /**
+     * Pick out the keys the Bloom filter proves are not catalogued
+     * The filter learns about other desks' adds from the change feed, so its answers are
+     * only trusted once the feed has caught up with everything committed so far; that
+     * catch-up costs a round trip per shard, so it is done once per batch
+     * @return Keys that need no database lookup; empty if the filter cannot be trusted
+     */
+    private List<String> definitelyNewKeys(List<String> keys) {
+        List<String> definitelyNew = new ArrayList<>();
+        if (!ChangeFeed.catchUp()) {
+            return definitelyNew;
+        }
+        try {
+            for (String key : keys) {
+                if (!KnownKeys.mightContain(key)) {
+                    definitelyNew.add(key);
+                }
+            }
+        } catch (SQLException e) {
+            definitelyNew.clear(); // Fall back to asking the database directly
+        }
+        return definitelyNew;
+    }
+
+    /**
+     * Insert books on the home shard in one transaction and log them for ChangeFeed
+     * Books whose key turns out to exist on the home shard by then are skipped
+     * @return The inserted books, with their ids set once the insert has committed
+     */
+    private List<Book> insertAll(List<Book> books) throws SQLException {
+        if (books.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Shard home = DatabaseConnection.getHomeShard();
+        List<Integer> ids = new ArrayList<>();
+        List<Book> inserted = DatabaseConnection.inTransaction(home, conn -> {
+            ids.clear(); // Left over from an attempt that was rolled back
+            List<Book> added = insertWithGeneratedKeys(conn, books, home, ids);
+            ChangeFeed.record(conn, BookChangeEvent.Type.ADDED, ids);
+            return added;
+        });
+        for (int i = 0; i < inserted.size(); i++) {
+            Book book = inserted.get(i);
+            book.setId(ids.get(i));
+            KnownKeys.add(BookKey.of(book.getTitle(), book.getAuthor()));
+        }
+        ChangeFeed.pollSoon();
+        return inserted;
+    }
+
+    /**
+     * Insert books one by one and let the database assign their ids
+     * Each shard's id sequence starts at the bottom of its range (see DatabaseConnection),
+     * so concurrent desks never pick the same id and deleted ids are not handed out again
+     * Each insert skips itself if the key already exists, which catches a duplicate added at
+     * another desk of the same branch after the Bloom filter was consulted; on MySQL the
+     * NOT EXISTS read locks the key range, so two such inserts cannot both succeed
+     * Drivers differ in which keys they return for a batch, so rows are not batched here
+     * @return The books that were inserted
+     */
+    private List<Book> insertWithGeneratedKeys(Connection conn, List<Book> books, Shard shard, List<Integer> ids)
+            throws SQLException {
+        String sql = "INSERT INTO books(title, author, isAvailable, norm_key) SELECT ?, ?, ?, ?"
+            + (shard.isSqlite() ? "" : " FROM DUAL")
+            + " WHERE NOT EXISTS (SELECT 1 FROM books WHERE norm_key = ?)";
+        List<Book> inserted = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Book book : books) {
+                String key = BookKey.of(book.getTitle(), book.getAuthor());
+                stmt.setString(1, book.getTitle());
+                stmt.setString(2, book.getAuthor());
+                stmt.setBoolean(3, book.isAvailable());
+                stmt.setString(4, key);
+                stmt.setString(5, key);
+                if (stmt.executeUpdate() == 0) {
+                    continue;
+                }
+                ResultSet keys = stmt.getGeneratedKeys();
+                if (!keys.next()) {
+                    throw new SQLException("No id was generated for " + book.getTitle());
+                }
+                int id = keys.getInt(1);
+                if (!shard.ownsId(id)) {
+                    throw new SQLException("Id range of shard " + shard.getName() + " is exhausted");
+                }
+                ids.add(id);
+                inserted.add(book);
+            }
+        }
+        return inserted;
+    }
+
     /**
      * Retrieve all books from the database
      * @return List of all books
      */
     public List<Book> getAllBooks() {
-        List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books ORDER BY id";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                Book book = new Book(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getBoolean("isAvailable")
-                );
-                books.add(book);
+        String sql = "SELECT " + BookRowMapper.Projection.FULL.columns() + " FROM books ORDER BY id";
+        List<String> failures = new ArrayList<>();
+        // Changes published while the shards are read may or may not be in the result,
+        // so they are kept and applied again on top of it
+        KnownKeys.beginRead();
+        synchronized (cacheLock) {
+            if (cacheReadsInFlight++ == 0) {
+                changesDuringRead = new ArrayList<>();
             }
-            
-        } catch (SQLException e) {
-            showError("Error retrieving books: " + e.getMessage());
         }
-        
-        return books;
+        try {
+            List<List<Book>> perShard = ShardFanOut.queryAll(conn -> {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    return BookRowMapper.mapAll(rs, BookRowMapper.Projection.FULL);
+                }
+            }, failures);
+
+            if (failures.isEmpty()) {
+                List<Book> books = ShardFanOut.mergeSorted(perShard, BY_ID, Integer.MAX_VALUE);
+                TreeMap<Integer, Book> byId = new TreeMap<>();
+                for (Book book : books) {
+                    byId.put(book.getId(), book);
+                }
+                synchronized (cacheLock) {
+                    for (BookChangeEvent event : changesDuringRead) {
+                        patch(byId, event);
+                    }
+                    cachedCatalogue = byId;
+                }
+                KnownKeys.rebuild(books);
+                markOnline();
+                return books;
+            }
+            if (!canServeFromCache()) {
+                showError("Error retrieving books: " + String.join("; ", failures));
+                return ShardFanOut.mergeSorted(perShard, BY_ID, Integer.MAX_VALUE);
+            }
+        } finally {
+            KnownKeys.endRead();
+            synchronized (cacheLock) {
+                if (--cacheReadsInFlight == 0) {
+                    changesDuringRead = null;
+                }
+            }
+        }
+        return cachedBooks();
     }
 
     /**
@@ -110,14 +325,21 @@ public class BookDAO {
      */
     public boolean updateAvailability(int bookId, boolean available) {
         String sql = "UPDATE books SET isAvailable = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setBoolean(1, available);
-            stmt.setInt(2, bookId);
+        try {
+            int rowsAffected = DatabaseConnection.inTransaction(DatabaseConnection.getShardForId(bookId), conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setBoolean(1, available);
+                    stmt.setInt(2, bookId);
+                    int rows = stmt.executeUpdate();
+                    if (rows > 0) {
+                        ChangeFeed.record(conn, BookChangeEvent.Type.UPDATED, bookId);
+                    }
+                    return rows;
+                }
+            });
             
-            int rowsAffected = stmt.executeUpdate();
             if (rowsAffected > 0) {
+                ChangeFeed.pollSoon();
                 String message = available ? "Book returned successfully!" : "Book borrowed successfully!";
                 JOptionPane.showMessageDialog(null, message, "Success", JOptionPane.INFORMATION_MESSAGE);
                 return true;
@@ -129,38 +351,431 @@ public class BookDAO {
         return false;
     }
 
+    /**
+     * Update the availability of several books in one batched transaction per shard
+     * Only books currently in the opposite state are changed, so a book borrowed
+     * at another desk since the table was loaded is reported as not updated
+     * @param bookIds IDs of the books to update
+     * @param available New availability status
+     * @return Outcome per book id, true if that book was updated
+     */
+    public Map<Integer, Boolean> updateAvailability(List<Integer> bookIds, boolean available) {
+        String sql = "UPDATE books SET isAvailable = ? WHERE id = ? AND isAvailable = ?";
+        return executeBatch(bookIds, sql, (stmt, bookId) -> {
+            stmt.setBoolean(1, available);
+            stmt.setInt(2, bookId);
+            stmt.setBoolean(3, !available);
+        }, BookChangeEvent.Type.UPDATED, "Error updating book availability: ");
+    }
+
+    /**
+     * Delete several books in one batched transaction per shard
+     * @param bookIds IDs of the books to delete
+     * @return Outcome per book id, true if that book was deleted
+     */
+    public Map<Integer, Boolean> deleteBooks(List<Integer> bookIds) {
+        String sql = "DELETE FROM books WHERE id = ?";
+        return executeBatch(bookIds, sql, (stmt, bookId) -> stmt.setInt(1, bookId),
+            BookChangeEvent.Type.DELETED, "Error deleting books: ");
+    }
+
+    /**
+     * Binds one book id's parameters for a batched statement
+     */
+    private interface BatchBinder {
+        void bind(PreparedStatement stmt, int bookId) throws SQLException;
+    }
+
+    /**
+     * Run one statement per book id as a JDBC batch, one transaction per owning shard
+     * A shard's transaction is retried as a whole on deadlocks and lock timeouts
+     * A failing shard is rolled back as a whole and its books reported as not updated
+     */
+    private Map<Integer, Boolean> executeBatch(List<Integer> bookIds, String sql, BatchBinder binder,
+                                               BookChangeEvent.Type changeType, String errorPrefix) {
+        Map<Integer, Boolean> outcomes = new LinkedHashMap<>();
+        Map<Shard, List<Integer>> byShard = new LinkedHashMap<>();
+        List<String> failures = new ArrayList<>();
+        for (int bookId : bookIds) {
+            outcomes.put(bookId, false);
+            try {
+                byShard.computeIfAbsent(DatabaseConnection.getShardForId(bookId), s -> new ArrayList<>()).add(bookId);
+            } catch (SQLException e) {
+                failures.add(e.getMessage());
+            }
+        }
+
+        for (Map.Entry<Shard, List<Integer>> entry : byShard.entrySet()) {
+            List<Integer> ids = entry.getValue();
+            try {
+                List<Integer> changed = DatabaseConnection.inTransaction(entry.getKey(), conn -> {
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        for (int bookId : ids) {
+                            binder.bind(stmt, bookId);
+                            stmt.addBatch();
+                        }
+                        int[] counts = stmt.executeBatch();
+                        List<Integer> changedIds = new ArrayList<>();
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                                changedIds.add(ids.get(i));
+                            }
+                        }
+                        ChangeFeed.record(conn, changeType, changedIds);
+                        return changedIds;
+                    }
+                });
+                for (int bookId : changed) {
+                    outcomes.put(bookId, true);
+                }
+            } catch (SQLException e) {
+                failures.add(e.getMessage());
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            showError(errorPrefix + String.join("; ", failures));
+        }
+        ChangeFeed.pollSoon();
+        return outcomes;
+    }
+
     /**
      * Search books by title or author
      * @param searchTerm Search term to look for
      * @return List of matching books
      */
     public List<Book> searchBooks(String searchTerm) {
-        List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books WHERE title LIKE ? OR author LIKE ? ORDER BY id";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
-            
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                Book book = new Book(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getBoolean("isAvailable")
-                );
-                books.add(book);
+        String sql = "SELECT " + BookRowMapper.Projection.FULL.columns()
+            + " FROM books WHERE title LIKE ? OR author LIKE ? ORDER BY id";
+        String searchPattern = "%" + searchTerm + "%";
+        List<String> failures = new ArrayList<>();
+        List<List<Book>> perShard = ShardFanOut.queryAll(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, searchPattern);
+                stmt.setString(2, searchPattern);
+                return BookRowMapper.mapAll(stmt.executeQuery(), BookRowMapper.Projection.FULL);
+            }
+        }, failures);
+
+        if (failures.isEmpty()) {
+            markOnline();
+        } else if (canServeFromCache()) {
+            String term = searchTerm.toLowerCase();
+            List<Book> books = new ArrayList<>();
+            for (Book book : cachedBooks()) {
+                if (book.getTitle().toLowerCase().contains(term) || book.getAuthor().toLowerCase().contains(term)) {
+                    books.add(book);
+                }
+            }
+            return books;
+        } else {
+            showError("Error searching books: " + String.join("; ", failures));
+        }
+        return ShardFanOut.mergeSorted(perShard, BY_ID, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieve one page of books, filtered and sorted by the database
+     * @param query Filter, sort and paging parameters
+     * @return List of matching books for the requested page
+     */
+    public List<Book> findBooks(BookQuery query) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ")
+            .append(BookRowMapper.Projection.FULL.columns()).append(" FROM books");
+        appendFilters(sql, params, query);
+
+        // With several shards the page can only be cut after merging, so each shard
+        // returns everything up to the end of the requested page
+        boolean sharded = DatabaseConnection.isSharded();
+        params.add(sharded ? query.getOffset() + query.getPageSize() : query.getPageSize());
+        params.add(sharded ? 0 : query.getOffset());
+
+        List<String> failures = new ArrayList<>();
+        List<List<Book>> perShard = ShardFanOut.queryAll(conn -> {
+            String paged = sql + orderBy(query, isSqlite(conn)) + " LIMIT ? OFFSET ?";
+            try (PreparedStatement stmt = conn.prepareStatement(paged)) {
+                bindParameters(stmt, params);
+                return BookRowMapper.mapAll(stmt.executeQuery(), BookRowMapper.Projection.FULL);
+            }
+        }, failures);
+
+        if (failures.isEmpty()) {
+            markOnline();
+        } else if (canServeFromCache()) {
+            List<Book> matching = matchCached(query);
+            int from = Math.min(query.getOffset(), matching.size());
+            int to = Math.min(from + query.getPageSize(), matching.size());
+            return new ArrayList<>(matching.subList(from, to));
+        } else {
+            showError("Error retrieving books: " + String.join("; ", failures));
+        }
+        if (!sharded) {
+            return perShard.isEmpty() ? new ArrayList<>() : perShard.get(0);
+        }
+        List<Book> merged = ShardFanOut.mergeSorted(perShard, comparatorFor(query),
+            query.getOffset() + query.getPageSize());
+        return merged.size() <= query.getOffset()
+            ? new ArrayList<>()
+            : new ArrayList<>(merged.subList(query.getOffset(), merged.size()));
+    }
+
+    /**
+     * Count the books matching a query's filters, ignoring paging
+     * @param query Filter parameters
+     * @return Number of matching books
+     */
+    public int countBooks(BookQuery query) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM books");
+        appendFilters(sql, params, query);
+
+        List<String> failures = new ArrayList<>();
+        List<Integer> counts = ShardFanOut.queryAll(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                bindParameters(stmt, params);
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                return rs.getInt(1);
+            }
+        }, failures);
+
+        if (failures.isEmpty()) {
+            markOnline();
+        } else if (canServeFromCache()) {
+            return matchCached(query).size();
+        } else {
+            showError("Error counting books: " + String.join("; ", failures));
+        }
+        return counts.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * @return true if the last read was answered from the cached catalogue
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Decide whether a failed read should fall back to the cached catalogue
+     * Only an open circuit counts as an outage; other errors are reported as usual
+     */
+    private boolean canServeFromCache() {
+        if (!hasCache() || DatabaseConnection.isAvailable()) {
+            return false;
+        }
+        offline = true;
+        showError("Database is unavailable. Showing the last loaded catalogue until it is back.");
+        return true;
+    }
+
+    private boolean hasCache() {
+        synchronized (cacheLock) {
+            return cachedCatalogue != null;
+        }
+    }
+
+    /**
+     * @return Snapshot of the cached catalogue in id order
+     */
+    private List<Book> cachedBooks() {
+        synchronized (cacheLock) {
+            return new ArrayList<>(cachedCatalogue.values());
+        }
+    }
+
+    /**
+     * Patch the cached catalogue with one change event
+     * Events arriving while getAllBooks reads are also kept, to be replayed onto its result
+     * A RELOAD leaves it alone; the reload that follows calls getAllBooks and replaces it
+     */
+    private void applyToCache(BookChangeEvent event) {
+        synchronized (cacheLock) {
+            if (changesDuringRead != null) {
+                changesDuringRead.add(event);
+            }
+            if (cachedCatalogue != null) {
+                patch(cachedCatalogue, event);
+            }
+        }
+    }
+
+    private static void patch(Map<Integer, Book> byId, BookChangeEvent event) {
+        if (event.getType() == BookChangeEvent.Type.DELETED) {
+            byId.remove(event.getBookId());
+        } else if (event.getBook() != null) {
+            byId.put(event.getBookId(), event.getBook());
+        }
+    }
+
+    private void markOnline() {
+        offline = false;
+        outageReported = false;
+    }
+
+    /**
+     * Apply a query's filters and order to the cached catalogue
+     * Mirrors appendFilters with the case-insensitive matching of the default collations
+     */
+    private List<Book> matchCached(BookQuery query) {
+        List<Book> matching = new ArrayList<>();
+        String author = query.getAuthor();
+        String prefix = query.getTitlePrefix();
+        for (Book book : cachedBooks()) {
+            if (query.getAvailable() != null && book.isAvailable() != query.getAvailable()) {
+                continue;
+            }
+            if (author != null && !author.isEmpty() && !book.getAuthor().equalsIgnoreCase(author)) {
+                continue;
+            }
+            if (prefix != null && !prefix.isEmpty()
+                    && !book.getTitle().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                continue;
+            }
+            matching.add(book);
+        }
+        matching.sort(comparatorFor(query));
+        return matching;
+    }
+
+    /**
+     * Build the ORDER BY clause for a query
+     * SQLite text columns default to case-sensitive BINARY order, so they are sorted with
+     * NOCASE there; MySQL's default utf8mb4 collation already ignores case and accents
+     */
+    private String orderBy(BookQuery query, boolean sqlite) {
+        String direction = query.isAscending() ? "ASC" : "DESC";
+        StringBuilder order = new StringBuilder(" ORDER BY ").append(query.getSortField().getColumn());
+        if (sqlite && (query.getSortField() == BookQuery.SortField.TITLE
+                || query.getSortField() == BookQuery.SortField.AUTHOR)) {
+            order.append(" COLLATE NOCASE");
+        }
+        order.append(' ').append(direction);
+        if (query.getSortField() != BookQuery.SortField.ID) {
+            // Tie-break on id so paging is stable across equal keys
+            order.append(", id ").append(direction);
+        }
+        return order.toString();
+    }
+
+    private static boolean isSqlite(Connection conn) throws SQLException {
+        return conn.getMetaData().getURL().startsWith("jdbc:sqlite:");
+    }
+
+    /**
+     * Java text order equal to the shards' ORDER BY on title and author
+     * Deployments mixing MySQL and SQLite shards follow the MySQL order
+     */
+    private static Comparator<String> textOrder() {
+        for (Shard shard : DatabaseConnection.getShards()) {
+            if (!shard.isSqlite()) {
+                return MYSQL_ORDER;
+            }
+        }
+        return SQLITE_NOCASE;
+    }
+
+    /**
+     * SQLite's NOCASE collation: code point order with only ASCII letters folded
+     */
+    private static int compareNoCase(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+            ca = ca >= 'A' && ca <= 'Z' ? ca + 32 : ca;
+            cb = cb >= 'A' && cb <= 'Z' ? cb + 32 : cb;
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * MySQL's accent- and case-insensitive utf8mb4 order, approximated by a primary-strength collator
+     */
+    private static Comparator<String> mysqlOrder() {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        return collator::compare;
+    }
+
+    /**
+     * Java ordering equivalent to a query's ORDER BY, used to merge shard results
+     * and to sort the cached catalogue while offline
+     */
+    private Comparator<Book> comparatorFor(BookQuery query) {
+        Comparator<Book> order;
+        switch (query.getSortField()) {
+            case TITLE:
+                order = Comparator.comparing(Book::getTitle, textOrder());
+                break;
+            case AUTHOR:
+                order = Comparator.comparing(Book::getAuthor, textOrder());
+                break;
+            case STATUS:
+                order = Comparator.comparing(Book::isAvailable);
+                break;
+            default:
+                order = BY_ID;
+                break;
+        }
+        if (query.getSortField() != BookQuery.SortField.ID) {
+            order = order.thenComparing(BY_ID);
+        }
+        return query.isAscending() ? order : order.reversed();
+    }
+
+    /**
+     * Append the WHERE clause for a query's filters
+     * Filters are ordered to match the (isAvailable, title) and (author, title) indexes
+     */
+    private void appendFilters(StringBuilder sql, List<Object> params, BookQuery query) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getAvailable() != null) {
+            conditions.add("isAvailable = ?");
+            params.add(query.getAvailable());
+        }
+        if (query.getAuthor() != null && !query.getAuthor().isEmpty()) {
+            conditions.add("author = ?");
+            params.add(query.getAuthor());
+        }
+        if (query.getTitlePrefix() != null && !query.getTitlePrefix().isEmpty()) {
+            conditions.add("title LIKE ? ESCAPE '!'");
+            params.add(escapeLike(query.getTitlePrefix()) + "%");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    /**
+     * Escape LIKE wildcards so a prefix only matches literally
+     */
+    private String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Bind positional parameters to a prepared statement
+     */
+    private void bindParameters(PreparedStatement stmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            if (param instanceof Boolean) {
+                stmt.setBoolean(i + 1, (Boolean) param);
+            } else if (param instanceof Integer) {
+                stmt.setInt(i + 1, (Integer) param);
+            } else {
+                stmt.setString(i + 1, (String) param);
             }
-            
-        } catch (SQLException e) {
-            showError("Error searching books: " + e.getMessage());
         }
-        
-        return books;
     }
 
     /**
@@ -170,13 +785,20 @@ public class BookDAO {
      */
     public boolean deleteBook(int bookId) {
         String sql = "DELETE FROM books WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, bookId);
-            int rowsAffected = stmt.executeUpdate();
+        try {
+            int rowsAffected = DatabaseConnection.inTransaction(DatabaseConnection.getShardForId(bookId), conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, bookId);
+                    int rows = stmt.executeUpdate();
+                    if (rows > 0) {
+                        ChangeFeed.record(conn, BookChangeEvent.Type.DELETED, bookId);
+                    }
+                    return rows;
+                }
+            });
             
             if (rowsAffected > 0) {
+                ChangeFeed.pollSoon();
                 JOptionPane.showMessageDialog(null, 
                     "Book deleted successfully!", 
                     "Success", 
@@ -196,21 +818,12 @@ public class BookDAO {
      * @return Book object or null if not found
      */
     public Book getBookById(int bookId) {
-        String sql = "SELECT * FROM books WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
+        String sql = "SELECT " + BookRowMapper.Projection.FULL.columns() + " FROM books WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnection(DatabaseConnection.getShardForId(bookId));
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, bookId);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return new Book(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getBoolean("isAvailable")
-                );
-            }
+            return BookRowMapper.mapFirst(stmt.executeQuery(), BookRowMapper.Projection.FULL);
             
         } catch (SQLException e) {
             showError("Error retrieving book: " + e.getMessage());
@@ -218,11 +831,68 @@ public class BookDAO {
         return null;
     }
 
+    /**
+     * Read the current availability of several books, selecting only id and status
+     * @param bookIds IDs of the books to check
+     * @return Availability per book id; books that no longer exist are absent
+     */
+    public Map<Integer, Boolean> getAvailability(List<Integer> bookIds) {
+        Map<Integer, Boolean> availability = new LinkedHashMap<>();
+        Map<Shard, List<Integer>> byShard = new LinkedHashMap<>();
+        List<String> failures = new ArrayList<>();
+        for (int bookId : bookIds) {
+            try {
+                byShard.computeIfAbsent(DatabaseConnection.getShardForId(bookId), s -> new ArrayList<>()).add(bookId);
+            } catch (SQLException e) {
+                failures.add(e.getMessage());
+            }
+        }
+
+        for (Map.Entry<Shard, List<Integer>> entry : byShard.entrySet()) {
+            List<Integer> ids = entry.getValue();
+            String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+            String sql = "SELECT " + BookRowMapper.Projection.STATUS.columns()
+                + " FROM books WHERE id IN (" + placeholders + ")";
+            try (Connection conn = DatabaseConnection.getConnection(entry.getKey());
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                for (int i = 0; i < ids.size(); i++) {
+                    stmt.setInt(i + 1, ids.get(i));
+                }
+                for (Book book : BookRowMapper.mapAll(stmt.executeQuery(), BookRowMapper.Projection.STATUS)) {
+                    availability.put(book.getId(), book.isAvailable());
+                }
+
+            } catch (SQLException e) {
+                failures.add(e.getMessage());
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            showError("Error checking availability: " + String.join("; ", failures));
+        }
+        return availability;
+    }
+
     /**
      * Display error messages
      * @param message Error message to display
      */
     private void showError(String message) {
-        JOptionPane.showMessageDialog(null, message, "Database Error", JOptionPane.ERROR_MESSAGE);
+        // One dialog per outage; further failures while the circuit is open only go to the console
+        if (!DatabaseConnection.isAvailable()) {
+            if (outageReported) {
+                System.err.println(message);
+                return;
+            }
+            outageReported = true;
+        }
+        // Reads such as getAllBooks may run on a background worker
+        if (SwingUtilities.isEventDispatchThread()) {
+            JOptionPane.showMessageDialog(null, message, "Database Error", JOptionPane.ERROR_MESSAGE);
+        } else {
+            SwingUtilities.invokeLater(() ->
+                JOptionPane.showMessageDialog(null, message, "Database Error", JOptionPane.ERROR_MESSAGE));
+        }
     }
 }
\ No newline at end of file
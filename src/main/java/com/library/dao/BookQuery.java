@@ -0,0 +1,141 @@
+package com.library.dao;
+
+/**
+ * Query parameters for paged, sorted and filtered book reads
+ * Sorting and filtering are pushed down into SQL by BookDAO
+ */
+public class BookQuery {
+
+    /**
+     * Sortable book columns
+     * Column names are whitelisted here so they can be spliced into ORDER BY safely
+     */
+    public enum SortField {
+        ID("id"),
+        TITLE("title"),
+        AUTHOR("author"),
+        STATUS("isAvailable");
+
+        private final String column;
+
+        SortField(String column) {
+            this.column = column;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private Boolean available;
+    private String author;
+    private String titlePrefix;
+    private SortField sortField = SortField.ID;
+    private boolean ascending = true;
+    private int page = 0;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    // Default constructor
+    public BookQuery() {
+    }
+
+    // Getters
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getTitlePrefix() {
+        return titlePrefix;
+    }
+
+    public SortField getSortField() {
+        return sortField;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getOffset() {
+        return page * pageSize;
+    }
+
+    // Setters
+    /**
+     * @param available availability to filter on, or null for all books
+     */
+    public void setAvailable(Boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * @param author exact author to filter on, or null/empty for all authors
+     */
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    /**
+     * @param titlePrefix title prefix to filter on, or null/empty for all titles
+     */
+    public void setTitlePrefix(String titlePrefix) {
+        this.titlePrefix = titlePrefix;
+    }
+
+    public void setSortField(SortField sortField) {
+        this.sortField = sortField == null ? SortField.ID : sortField;
+    }
+
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    public void setPage(int page) {
+        this.page = Math.max(0, page);
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Sort on the given field, toggling direction if it is already the sort field
+     * @param field Field to sort on
+     */
+    public void toggleSort(SortField field) {
+        if (sortField == field) {
+            ascending = !ascending;
+        } else {
+            sortField = field;
+            ascending = true;
+        }
+        page = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BookQuery{" +
+                "available=" + available +
+                ", author='" + author + '\'' +
+                ", titlePrefix='" + titlePrefix + '\'' +
+                ", sortField=" + sortField +
+                ", ascending=" + ascending +
+                ", page=" + page +
+                ", pageSize=" + pageSize +
+                '}';
+    }
+}
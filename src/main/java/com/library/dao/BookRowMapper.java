@@ -0,0 +1,102 @@
+package com.library.dao;
+
+import com.library.model.Book;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps book rows to Book objects for a given column projection
+ * Column indexes are resolved once per result set instead of by name on every row
+ */
+class BookRowMapper {
+
+    /**
+     * Column sets a query can select
+     */
+    enum Projection {
+        /** Everything the GUI shows */
+        FULL("id, title, author, isAvailable"),
+        /** Just enough for availability checks */
+        STATUS("id, isAvailable");
+
+        private final String columns;
+
+        Projection(String columns) {
+            this.columns = columns;
+        }
+
+        /**
+         * @return Comma-separated column list for the SELECT clause
+         */
+        String columns() {
+            return columns;
+        }
+
+        boolean includesText() {
+            return this == FULL;
+        }
+    }
+
+    private final Projection projection;
+    private int idIndex;
+    private int titleIndex;
+    private int authorIndex;
+    private int availableIndex;
+
+    private BookRowMapper(Projection projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Map every remaining row of a result set
+     * @param rs Result set selected with the projection's columns
+     * @param projection Columns the query selected
+     * @return Mapped books; fields outside the projection are left unset
+     * @throws SQLException if reading the result set fails
+     */
+    static List<Book> mapAll(ResultSet rs, Projection projection) throws SQLException {
+        BookRowMapper mapper = new BookRowMapper(projection);
+        mapper.resolve(rs);
+        List<Book> books = new ArrayList<>();
+        while (rs.next()) {
+            books.add(mapper.map(rs));
+        }
+        return books;
+    }
+
+    /**
+     * Map the next row of a result set, if any
+     * @param rs Result set selected with the projection's columns
+     * @param projection Columns the query selected
+     * @return Mapped book, or null if there are no more rows
+     * @throws SQLException if reading the result set fails
+     */
+    static Book mapFirst(ResultSet rs, Projection projection) throws SQLException {
+        BookRowMapper mapper = new BookRowMapper(projection);
+        mapper.resolve(rs);
+        return rs.next() ? mapper.map(rs) : null;
+    }
+
+    private void resolve(ResultSet rs) throws SQLException {
+        idIndex = rs.findColumn("id");
+        availableIndex = rs.findColumn("isAvailable");
+        if (projection.includesText()) {
+            titleIndex = rs.findColumn("title");
+            authorIndex = rs.findColumn("author");
+        }
+    }
+
+    private Book map(ResultSet rs) throws SQLException {
+        Book book = new Book();
+        book.setId(rs.getInt(idIndex));
+        book.setAvailable(rs.getBoolean(availableIndex));
+        if (projection.includesText()) {
+            book.setTitle(rs.getString(titleIndex));
+            book.setAuthor(rs.getString(authorIndex));
+        }
+        return book;
+    }
+}
@@ -0,0 +1,348 @@
+package com.library.dao;
+
+import com.library.event.BookChangeEvent;
+import com.library.event.BookEventBus;
+import com.library.model.Book;
+import com.library.util.DatabaseConnection;
+import com.library.util.Shard;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cross-process change notifications through the book_changes log table
+ * BookDAO appends a row per changed book in the same transaction as the change; every
+ * running client polls the log with one indexed range query and republishes new rows on
+ * the BookEventBus, including its own changes, so each change is delivered exactly once
+ * A sequence number is assigned at INSERT but becomes visible at COMMIT, so on MySQL a lower
+ * number can show up after a higher one; numbers skipped over are re-read for a grace period
+ */
+public class ChangeFeed {
+    private static final int BATCH = 500;
+    private static final int KEEP_ROWS = 10000;
+    private static final int MAX_GAPS = 10000;
+    private static final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "book-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<Shard, Long> lastSeen = new HashMap<>();
+    private static final Map<Shard, NavigableMap<Long, Long>> gaps = new HashMap<>();
+    private static long gracePeriodMillis;
+    private static long intervalNanos;
+    /** System.nanoTime() at the start of the last poll that read every shard */
+    private static volatile long lastCompletePoll;
+    private static volatile boolean started = false;
+    private static int polls = 0;
+
+    private ChangeFeed() {
+    }
+
+    /**
+     * Start polling every db.changes.pollMs from the current end of each shard's log
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        long interval = Long.parseLong(DatabaseConnection.getProperty("db.changes.pollMs", "1000"));
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+        gracePeriodMillis = Long.parseLong(DatabaseConnection.getProperty("db.changes.gapGraceMs", "60000"));
+        poller.execute(ChangeFeed::seekToEnd);
+        poller.scheduleWithFixedDelay(ChangeFeed::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Poll right away, e.g. after this desk committed a change
+     */
+    public static void pollSoon() {
+        if (started) {
+            poller.execute(ChangeFeed::poll);
+        }
+    }
+
+    /**
+     * Poll now and wait until every change committed so far has been published
+     * Lets callers trust state built from events, such as the duplicate Bloom filter,
+     * as much as a query of their own; must not be called from an event listener
+     * @return true if every shard was polled, false if the feed is stopped or a shard failed
+     */
+    static boolean catchUp() {
+        if (!started) {
+            return false;
+        }
+        try {
+            return poller.submit(ChangeFeed::poll)
+                .get(DatabaseConnection.getShardTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check, without touching the database, whether the feed is keeping up
+     * @return true if every change committed more than about two poll intervals ago
+     *         has been published
+     */
+    static boolean isCurrent() {
+        return started && lastCompletePoll != 0 && System.nanoTime() - lastCompletePoll <= 2 * intervalNanos;
+    }
+
+    /**
+     * Append change rows for books modified in the caller's transaction
+     * @param conn Connection with the open transaction
+     * @param type Kind of change
+     * @param bookIds Changed books
+     * @throws SQLException if the log cannot be written; the caller rolls back
+     */
+    static void record(Connection conn, BookChangeEvent.Type type, List<Integer> bookIds) throws SQLException {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO book_changes(book_id, change_type) VALUES (?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int bookId : bookIds) {
+                stmt.setInt(1, bookId);
+                stmt.setString(2, type.name());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Record a change of a single book
+     */
+    static void record(Connection conn, BookChangeEvent.Type type, int bookId) throws SQLException {
+        record(conn, type, Collections.singletonList(bookId));
+    }
+
+    private static void seekToEnd() {
+        for (Shard shard : DatabaseConnection.getShards()) {
+            try (Connection conn = DatabaseConnection.getConnection(shard)) {
+                lastSeen.put(shard, maxSeq(conn));
+            } catch (SQLException e) {
+                System.err.println("Change feed could not read shard " + shard.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Publish every change logged since the last poll, shard by shard
+     * Runs only on the poller thread
+     * @return true if every shard was read successfully
+     */
+    private static boolean poll() {
+        long startedAt = System.nanoTime();
+        boolean complete = true;
+        boolean trim = ++polls % 600 == 0;
+        for (Shard shard : DatabaseConnection.getShards()) {
+            try (Connection conn = DatabaseConnection.getConnection(shard)) {
+                Long last = lastSeen.get(shard);
+                if (last == null) {
+                    // Not positioned yet, so nothing since startup has been published
+                    lastSeen.put(shard, maxSeq(conn));
+                    complete = false;
+                    continue;
+                }
+                long[] bounds = seqBounds(conn);
+                if (bounds[1] < last || last + 1 < bounds[0]) {
+                    // The log went backwards (the database was restored underneath us) or was
+                    // trimmed past our position, so individual events can no longer be replayed
+                    lastSeen.put(shard, bounds[1]);
+                    gaps.remove(shard);
+                    BookEventBus.publish(new BookChangeEvent(BookChangeEvent.Type.RELOAD, 0, null));
+                    continue;
+                }
+                lastSeen.put(shard, publishSince(conn, shard, last));
+                recheckGaps(conn, shard);
+                if (trim) {
+                    trim(conn);
+                }
+            } catch (SQLException e) {
+                // The circuit breaker keeps this cheap while the database is down
+                System.err.println("Change feed poll failed for shard " + shard.getName() + ": " + e.getMessage());
+                complete = false;
+            }
+        }
+        if (complete) {
+            lastCompletePoll = startedAt;
+        }
+        return complete;
+    }
+
+    /**
+     * Read and publish log rows after a sequence number
+     * Numbers skipped on the way are remembered as gaps that may still commit
+     * @return Highest sequence number published
+     */
+    private static long publishSince(Connection conn, Shard shard, long last) throws SQLException {
+        String sql = "SELECT seq, book_id, change_type FROM book_changes WHERE seq > ? ORDER BY seq LIMIT ?";
+        NavigableMap<Long, Long> missing = gaps.computeIfAbsent(shard, s -> new TreeMap<>());
+        while (true) {
+            List<ChangeRow> rows = readRows(conn, sql, last, BATCH);
+            if (rows.isEmpty()) {
+                return last;
+            }
+            long deadline = System.currentTimeMillis() + gracePeriodMillis;
+            for (ChangeRow row : rows) {
+                for (long seq = last + 1; seq < row.seq && missing.size() < MAX_GAPS; seq++) {
+                    missing.put(seq, deadline);
+                }
+                last = row.seq;
+            }
+            publish(conn, rows);
+            if (rows.size() < BATCH) {
+                return last;
+            }
+        }
+    }
+
+    /**
+     * Publish gap rows that have committed since they were skipped
+     * Gaps left by rolled-back transactions never fill and are dropped after the grace period
+     */
+    private static void recheckGaps(Connection conn, Shard shard) throws SQLException {
+        NavigableMap<Long, Long> missing = gaps.get(shard);
+        if (missing == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        missing.values().removeIf(deadline -> deadline < now);
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        String sql = "SELECT seq, book_id, change_type FROM book_changes WHERE seq BETWEEN ? AND ? ORDER BY seq";
+        List<ChangeRow> filled = new ArrayList<>();
+        for (ChangeRow row : readRows(conn, sql, missing.firstKey(), missing.lastKey())) {
+            if (missing.remove(row.seq) != null) {
+                filled.add(row);
+            }
+        }
+        publish(conn, filled);
+    }
+
+    /**
+     * Read log rows for a query taking two long parameters
+     */
+    private static List<ChangeRow> readRows(Connection conn, String sql, long first, long second)
+            throws SQLException {
+        List<ChangeRow> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, first);
+            stmt.setLong(2, second);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new ChangeRow(rs.getLong(1), rs.getInt(2),
+                        BookChangeEvent.Type.valueOf(rs.getString(3))));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Publish log rows in order with the current state of added and updated books
+     */
+    private static void publish(Connection conn, List<ChangeRow> rows) throws SQLException {
+        // Fetch the current state of added and updated books in one query
+        List<Integer> changed = new ArrayList<>();
+        for (ChangeRow row : rows) {
+            if (row.type == BookChangeEvent.Type.ADDED || row.type == BookChangeEvent.Type.UPDATED) {
+                changed.add(row.bookId);
+            }
+        }
+        Map<Integer, Book> current = fetchBooks(conn, changed);
+
+        for (ChangeRow row : rows) {
+            Book book = current.get(row.bookId);
+            if ((row.type == BookChangeEvent.Type.ADDED || row.type == BookChangeEvent.Type.UPDATED) && book == null) {
+                continue; // Deleted since; its DELETED row follows
+            }
+            BookEventBus.publish(new BookChangeEvent(row.type, row.bookId, book));
+        }
+    }
+
+    private static Map<Integer, Book> fetchBooks(Connection conn, List<Integer> bookIds) throws SQLException {
+        Map<Integer, Book> books = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return books;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(bookIds.size(), "?"));
+        String sql = "SELECT " + BookRowMapper.Projection.FULL.columns()
+            + " FROM books WHERE id IN (" + placeholders + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < bookIds.size(); i++) {
+                stmt.setInt(i + 1, bookIds.get(i));
+            }
+            for (Book book : BookRowMapper.mapAll(stmt.executeQuery(), BookRowMapper.Projection.FULL)) {
+                books.put(book.getId(), book);
+            }
+        }
+        return books;
+    }
+
+    private static long maxSeq(Connection conn) throws SQLException {
+        return seqBounds(conn)[1];
+    }
+
+    /**
+     * @return Lowest and highest sequence numbers in the log, or zeros if it is empty
+     */
+    private static long[] seqBounds(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(seq), MAX(seq) FROM book_changes")) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    /**
+     * One row of the book_changes log
+     */
+    private static class ChangeRow {
+        final long seq;
+        final int bookId;
+        final BookChangeEvent.Type type;
+
+        ChangeRow(long seq, int bookId, BookChangeEvent.Type type) {
+            this.seq = seq;
+            this.bookId = bookId;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Keep the log bounded; clients further behind than this simply reload
+     */
+    private static void trim(Connection conn) throws SQLException {
+        long cutoff = maxSeq(conn) - KEEP_ROWS;
+        if (cutoff <= 0) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM book_changes WHERE seq <= ?")) {
+            stmt.setLong(1, cutoff);
+            stmt.executeUpdate();
+        }
+    }
+}
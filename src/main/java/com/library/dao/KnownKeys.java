@@ -0,0 +1,159 @@
+package com.library.dao;
+
+import com.library.event.BookChangeEvent;
+import com.library.event.BookEventBus;
+import com.library.model.Book;
+import com.library.search.BloomFilter;
+import com.library.util.BookKey;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bloom filter over the normalized keys of every catalogued book
+ * A negative answer means a book is definitely new, so adds skip the duplicate query.
+ * Deleted books stay in the filter and only cost an extra query until it is rebuilt.
+ */
+class KnownKeys {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_CAPACITY = 10000;
+    private static BloomFilter filter;
+    private static boolean subscribed = false;
+    /** Keys added while catalogue reads for a rebuild are in flight; null when none are */
+    private static List<String> addedDuringRead;
+    private static int readsInFlight = 0;
+
+    private KnownKeys() {
+    }
+
+    /**
+     * @param key Normalized book key
+     * @return false if no catalogued book has this key, true if one may have
+     * @throws SQLException if the filter had to be loaded and a shard could not be read
+     */
+    static synchronized boolean mightContain(String key) throws SQLException {
+        if (filter == null) {
+            load();
+        }
+        return filter.mightContain(key);
+    }
+
+    /**
+     * Answer from the loaded filter only, never querying the database
+     * @param key Normalized book key
+     * @return true if the filter is loaded and rules the key out
+     */
+    static synchronized boolean isKnownAbsent(String key) {
+        return filter != null && !filter.mightContain(key);
+    }
+
+    /**
+     * Record a key added at this or another desk
+     */
+    static synchronized void add(String key) {
+        if (addedDuringRead != null) {
+            addedDuringRead.add(key);
+        }
+        if (filter == null) {
+            return; // Picked up by the next load
+        }
+        filter.put(key);
+        if (filter.isSaturated()) {
+            filter = null;
+        }
+    }
+
+    /**
+     * Call before reading a catalogue to pass to rebuild, and endRead after it in all cases
+     * Keys the feed adds meanwhile may be missing from the read, so they are kept for rebuild
+     */
+    static synchronized void beginRead() {
+        if (readsInFlight++ == 0) {
+            addedDuringRead = new ArrayList<>();
+        }
+        subscribe(); // The first read must not miss feed events either
+    }
+
+    static synchronized void endRead() {
+        if (--readsInFlight == 0) {
+            addedDuringRead = null;
+        }
+    }
+
+    /**
+     * Rebuild from a freshly loaded catalogue instead of scanning the keys separately
+     * Must be called between beginRead and endRead around the catalogue read
+     */
+    static synchronized void rebuild(Collection<Book> catalogue) {
+        BloomFilter rebuilt = newFilter(catalogue.size());
+        for (Book book : catalogue) {
+            rebuilt.put(BookKey.of(book.getTitle(), book.getAuthor()));
+        }
+        if (addedDuringRead != null) {
+            for (String key : addedDuringRead) {
+                rebuilt.put(key);
+            }
+        }
+        filter = rebuilt;
+        subscribe();
+    }
+
+    private static void load() throws SQLException {
+        List<String> failures = new ArrayList<>();
+        List<Integer> counts = ShardFanOut.queryAll(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM books")) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }, failures);
+        if (!failures.isEmpty()) {
+            throw new SQLException(String.join("; ", failures));
+        }
+
+        BloomFilter loaded = newFilter(counts.stream().mapToInt(Integer::intValue).sum());
+        ShardFanOut.queryAll(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT norm_key FROM books")) {
+                while (rs.next()) {
+                    loaded.put(rs.getString(1));
+                }
+                return null;
+            }
+        }, failures);
+        if (!failures.isEmpty()) {
+            throw new SQLException(String.join("; ", failures));
+        }
+        filter = loaded;
+        subscribe();
+    }
+
+    /**
+     * Size for twice the current catalogue so normal growth does not force a rebuild
+     */
+    private static BloomFilter newFilter(int books) {
+        return new BloomFilter(Math.max(MIN_CAPACITY, books * 2), FALSE_POSITIVE_RATE);
+    }
+
+    private static void subscribe() {
+        if (subscribed) {
+            return;
+        }
+        subscribed = true;
+        BookEventBus.subscribe(event -> {
+            if (event.getType() == BookChangeEvent.Type.RELOAD) {
+                invalidate();
+            } else if (event.getBook() != null) {
+                add(BookKey.of(event.getBook().getTitle(), event.getBook().getAuthor()));
+            }
+        });
+    }
+
+    private static synchronized void invalidate() {
+        filter = null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import com.library.util.DatabaseConnection;
+import com.library.util.Shard;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a read against every shard in parallel and gathers the results
+ * Each shard is bounded by the configured shard timeout so one slow branch cannot stall the rest
+ */
+class ShardFanOut {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "shard-query-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A read to run on one shard's connection
+     */
+    interface ShardQuery<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private ShardFanOut() {
+    }
+
+    /**
+     * Run a query on every shard
+     * @param query Query to run per shard
+     * @param failures Receives one message per shard that failed or timed out
+     * @return Results from the shards that answered, in shard order
+     */
+    static <T> List<T> queryAll(ShardQuery<T> query, List<String> failures) {
+        return queryAll(DatabaseConnection.getShards(), query, failures);
+    }
+
+    /**
+     * Run a query on some of the shards
+     * @param shards Shards to query
+     * @param query Query to run per shard
+     * @param failures Receives one message per shard that failed or timed out
+     * @return Results from the shards that answered, in shard order
+     */
+    static <T> List<T> queryAll(List<Shard> shards, ShardQuery<T> query, List<String> failures) {
+        List<T> results = new ArrayList<>();
+        if (shards.isEmpty()) {
+            return results;
+        }
+
+        // A single shard needs no thread hop
+        if (shards.size() == 1) {
+            try (Connection conn = DatabaseConnection.getConnection(shards.get(0))) {
+                results.add(query.run(conn));
+            } catch (SQLException e) {
+                failures.add(e.getMessage());
+            }
+            return results;
+        }
+
+        Map<Shard, Future<T>> pending = new LinkedHashMap<>();
+        for (Shard shard : shards) {
+            pending.put(shard, executor.submit(() -> {
+                try (Connection conn = DatabaseConnection.getConnection(shard)) {
+                    return query.run(conn);
+                }
+            }));
+        }
+
+        // All shards share one deadline rather than each getting a fresh timeout in turn
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DatabaseConnection.getShardTimeoutMillis());
+        for (Map.Entry<Shard, Future<T>> entry : pending.entrySet()) {
+            String name = entry.getKey().getName();
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                results.add(entry.getValue().get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                failures.add("shard " + name + " timed out");
+            } catch (ExecutionException e) {
+                failures.add("shard " + name + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add("shard " + name + " was interrupted");
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Merge per-shard lists that are each already sorted into one sorted list
+     * @param sortedLists Sorted result lists, one per shard
+     * @param order Order the lists are sorted in
+     * @param limit Maximum number of books to return
+     * @return Merged books, at most limit
+     */
+    static List<Book> mergeSorted(List<List<Book>> sortedLists, Comparator<Book> order, int limit) {
+        if (sortedLists.size() == 1) {
+            List<Book> only = sortedLists.get(0);
+            return only.size() <= limit ? only : new ArrayList<>(only.subList(0, limit));
+        }
+
+        // Heap of {list index, position} cursors ordered by the book each points at
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+            order.compare(sortedLists.get(a[0]).get(a[1]), sortedLists.get(b[0]).get(b[1])));
+        for (int i = 0; i < sortedLists.size(); i++) {
+            if (!sortedLists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        List<Book> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<Book> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,55 @@
+package com.library.event;
+
+import com.library.model.Book;
+
+/**
+ * A row-level change to the catalogue, made at this desk or another one
+ */
+public class BookChangeEvent {
+
+    /**
+     * Kinds of change recorded in the book_changes log
+     */
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED,
+        /** The whole catalogue was replaced, e.g. by a restore; reload everything */
+        RELOAD
+    }
+
+    private final Type type;
+    private final int bookId;
+    private final Book book;
+
+    public BookChangeEvent(Type type, int bookId, Book book) {
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+    }
+
+    // Getters
+    public Type getType() {
+        return type;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    /**
+     * @return Current state of the book for ADDED and UPDATED events, otherwise null
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    @Override
+    public String toString() {
+        return "BookChangeEvent{" +
+                "type=" + type +
+                ", bookId=" + bookId +
+                ", book=" + book +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package com.library.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe channel for catalogue changes
+ * Listeners are called on the publishing thread and must hop to the EDT themselves
+ */
+public class BookEventBus {
+    private static final List<Consumer<BookChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    private BookEventBus() {
+    }
+
+    /**
+     * Register a listener for all future change events
+     * @param listener Listener to call per event
+     */
+    public static void subscribe(Consumer<BookChangeEvent> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop delivering events to a listener
+     * @param listener Listener previously subscribed
+     */
+    public static void unsubscribe(Consumer<BookChangeEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Deliver an event to every listener
+     * A failing listener is reported and does not stop delivery to the others
+     * @param event Event to publish
+     */
+    public static void publish(BookChangeEvent event) {
+        for (Consumer<BookChangeEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Book change listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
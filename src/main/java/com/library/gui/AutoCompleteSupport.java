@@ -0,0 +1,193 @@
+package com.library.gui;
+
+import com.library.search.PrefixIndex;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * Attaches a suggestion popup to a text field
+ * Suggestions come from an in-memory PrefixIndex as the user types
+ */
+public class AutoCompleteSupport {
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final JTextField field;
+    private final PrefixIndex index;
+    private final DefaultListModel<String> listModel = new DefaultListModel<>();
+    private final JList<String> suggestionList = new JList<>(listModel);
+    private JWindow popup;
+    private boolean accepting = false;
+
+    private AutoCompleteSupport(JTextField field, PrefixIndex index) {
+        this.field = field;
+        this.index = index;
+    }
+
+    /**
+     * Install autocomplete on a text field
+     * @param field Field to attach to
+     * @param index Index to draw suggestions from
+     */
+    public static void install(JTextField field, PrefixIndex index) {
+        new AutoCompleteSupport(field, index).installListeners();
+    }
+
+    private void installListeners() {
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.setFocusable(false);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                scheduleUpdate();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                scheduleUpdate();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not affect suggestions
+            }
+        });
+
+        // Consumed key events never reach the field's own Enter action
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!isPopupVisible()) {
+                    return;
+                }
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        moveSelection(1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        moveSelection(-1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (suggestionList.getSelectedIndex() != -1) {
+                            accept(suggestionList.getSelectedValue());
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        hidePopup();
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+
+        field.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                hidePopup();
+            }
+        });
+
+        suggestionList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = suggestionList.locationToIndex(e.getPoint());
+                if (row != -1) {
+                    accept(listModel.get(row));
+                }
+            }
+        });
+    }
+
+    /**
+     * Defer the lookup until the document change has been applied
+     * Text set by accepting a suggestion does not reopen the popup
+     */
+    private void scheduleUpdate() {
+        if (!accepting) {
+            SwingUtilities.invokeLater(this::updateSuggestions);
+        }
+    }
+
+    /**
+     * Refresh the popup from the index for the field's current text
+     */
+    private void updateSuggestions() {
+        if (!field.isShowing()) {
+            return;
+        }
+        String text = field.getText();
+        List<String> suggestions = index.suggest(text, MAX_SUGGESTIONS);
+        if (suggestions.isEmpty()
+                || (suggestions.size() == 1 && suggestions.get(0).equalsIgnoreCase(text.trim()))) {
+            hidePopup();
+            return;
+        }
+
+        listModel.clear();
+        for (String suggestion : suggestions) {
+            listModel.addElement(suggestion);
+        }
+        showPopup();
+    }
+
+    private void showPopup() {
+        if (popup == null) {
+            popup = new JWindow(SwingUtilities.getWindowAncestor(field));
+            popup.setFocusableWindowState(false);
+            popup.add(new JScrollPane(suggestionList));
+        }
+        suggestionList.setVisibleRowCount(Math.min(listModel.size(), MAX_SUGGESTIONS));
+        popup.pack();
+        popup.setSize(field.getWidth(), popup.getHeight());
+        Point location = field.getLocationOnScreen();
+        popup.setLocation(location.x, location.y + field.getHeight());
+        popup.setVisible(true);
+    }
+
+    private void hidePopup() {
+        if (popup != null) {
+            popup.setVisible(false);
+        }
+        suggestionList.clearSelection();
+    }
+
+    private boolean isPopupVisible() {
+        return popup != null && popup.isVisible();
+    }
+
+    private void moveSelection(int delta) {
+        int size = listModel.size();
+        int next = suggestionList.getSelectedIndex() + delta;
+        next = Math.max(0, Math.min(size - 1, next));
+        suggestionList.setSelectedIndex(next);
+        suggestionList.ensureIndexIsVisible(next);
+    }
+
+    /**
+     * Replace the field's text with a chosen suggestion
+     */
+    private void accept(String value) {
+        accepting = true;
+        try {
+            field.setText(value);
+        } finally {
+            accepting = false;
+        }
+        hidePopup();
+    }
+}
@@ -1,26 +1,47 @@
 package com.library.gui;
 
 import com.library.dao.BookDAO;
+import com.library.dao.BookQuery;
+import com.library.dao.ChangeFeed;
+import com.library.event.BookChangeEvent;
+import com.library.event.BookEventBus;
 import com.library.model.Book;
+import com.library.search.PrefixIndex;
+import com.library.search.TrigramIndex;
+import com.library.util.BackupService;
 import com.library.util.DatabaseConnection;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Main GUI class for the Library Management System
  * Provides user interface for managing books
  */
 public class LibraryGUI extends JFrame {
+    private static final int FUZZY_RESULT_LIMIT = 50;
+    private static final int PAGE_REFRESH_DELAY_MILLIS = 200;
+
     private DefaultTableModel tableModel;
     private final BookDAO bookDAO;
+    private final TrigramIndex fuzzyIndex = new TrigramIndex();
+    private final PrefixIndex titleIndex = new PrefixIndex();
+    private final PrefixIndex authorIndex = new PrefixIndex();
     private JTable bookTable;
     private JTextField titleField;
     private JTextField authorField;
@@ -31,13 +52,27 @@ public class LibraryGUI extends JFrame {
     private JButton deleteButton;
     private JButton searchButton;
     private JButton refreshButton;
+    private JCheckBox fuzzySearchBox;
+    private JComboBox<String> statusFilter;
+    private JTextField authorFilterField;
+    private JTextField titlePrefixField;
+    private JButton filterButton;
+    private JButton previousPageButton;
+    private JButton nextPageButton;
+    private JLabel pageLabel;
+    private final BookQuery currentQuery = new BookQuery();
+    private Timer pageRefreshTimer;
+    private SwingWorker<Void, Void> indexBuild; // Running index build, if any
+    private final List<BookChangeEvent> eventsDuringBuild = new ArrayList<>();
 
     public LibraryGUI() {
         this.bookDAO = new BookDAO();
         initializeComponents();
         setupLayout();
         setupEventListeners();
+        buildSearchIndexes();
         refreshTable();
+        BookEventBus.subscribe(event -> SwingUtilities.invokeLater(() -> applyChange(event)));
     }
 
     /**
@@ -56,10 +91,16 @@ public class LibraryGUI extends JFrame {
         titleField = new JTextField();
         authorField = new JTextField();
         searchField = new JTextField();
+        authorFilterField = new JTextField();
+        titlePrefixField = new JTextField();
+        statusFilter = new JComboBox<>(new String[]{"All", "Available", "Not Available"});
 
         titleField.setToolTipText("Enter book title");
         authorField.setToolTipText("Enter author's name");
         searchField.setToolTipText("Search by title or author");
+        authorFilterField.setToolTipText("Show only books by this exact author");
+        titlePrefixField.setToolTipText("Show only titles starting with this text");
+        statusFilter.setToolTipText("Show only books with this status");
 
         // Buttons
         addButton = new JButton("Add Book");
@@ -68,6 +109,15 @@ public class LibraryGUI extends JFrame {
         deleteButton = new JButton("Delete Book");
         searchButton = new JButton("Search");
         refreshButton = new JButton("Refresh");
+        fuzzySearchBox = new JCheckBox("Fuzzy");
+        filterButton = new JButton("Apply Filter");
+        previousPageButton = new JButton("< Prev");
+        nextPageButton = new JButton("Next >");
+        pageLabel = new JLabel();
+
+        // Coalesce page reloads when many books arrive at once, e.g. from an import
+        pageRefreshTimer = new Timer(PAGE_REFRESH_DELAY_MILLIS, e -> refreshTable());
+        pageRefreshTimer.setRepeats(false);
 
         // Set mnemonics for keyboard shortcuts
         addButton.setMnemonic(KeyEvent.VK_A);
@@ -78,11 +128,15 @@ public class LibraryGUI extends JFrame {
 
         // Set tooltips
         addButton.setToolTipText("Add new book to library (Alt+A)");
-        borrowButton.setToolTipText("Mark selected book as borrowed (Alt+B)");
-        returnButton.setToolTipText("Mark selected book as returned (Alt+R)");
-        deleteButton.setToolTipText("Delete selected book (Alt+D)");
+        borrowButton.setToolTipText("Mark selected books as borrowed (Alt+B)");
+        returnButton.setToolTipText("Mark selected books as returned (Alt+R)");
+        deleteButton.setToolTipText("Delete selected books (Alt+D)");
         searchButton.setToolTipText("Search books (Alt+S)");
         refreshButton.setToolTipText("Refresh book list");
+        fuzzySearchBox.setToolTipText("Tolerate typos and rank results by relevance");
+        filterButton.setToolTipText("Apply status, author and title filters");
+        previousPageButton.setToolTipText("Show previous page");
+        nextPageButton.setToolTipText("Show next page");
 
         // Table setup
         String[] columnNames = {"ID", "Title", "Author", "Status", "Actions"};
@@ -94,13 +148,10 @@ public class LibraryGUI extends JFrame {
         };
 
         bookTable = new JTable(tableModel);
-        bookTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        bookTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         bookTable.setRowHeight(30);
         bookTable.getTableHeader().setReorderingAllowed(false);
-        
-        // Enable table sorting
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
-        bookTable.setRowSorter(sorter);
+        bookTable.getTableHeader().setToolTipText("Click a column header to sort");
 
         // Set column widths
         bookTable.getColumnModel().getColumn(0).setPreferredWidth(50);  // ID
@@ -114,6 +165,8 @@ public class LibraryGUI extends JFrame {
      * Setup the layout of components
      */
     private void setupLayout() {
+        setJMenuBar(createMenuBar());
+
         // Top panel for adding books
         JPanel addBookPanel = createAddBookPanel();
 
@@ -131,6 +184,7 @@ public class LibraryGUI extends JFrame {
         JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
         contentPanel.add(addBookPanel, BorderLayout.NORTH);
         contentPanel.add(searchPanel, BorderLayout.CENTER);
+        contentPanel.add(createFilterPanel(), BorderLayout.SOUTH);
 
         // Add all panels to frame
         add(contentPanel, BorderLayout.NORTH);
@@ -138,6 +192,34 @@ public class LibraryGUI extends JFrame {
         add(actionPanel, BorderLayout.SOUTH);
     }
 
+    /**
+     * Create the menu bar with import, backup and restore actions
+     */
+    private JMenuBar createMenuBar() {
+        JMenu fileMenu = new JMenu("File");
+        fileMenu.setMnemonic(KeyEvent.VK_F);
+
+        JMenuItem importItem = new JMenuItem("Import Books...");
+        importItem.setToolTipText("Add books from a CSV file of title,author lines, skipping duplicates");
+        importItem.addActionListener(e -> importBooks());
+        fileMenu.add(importItem);
+        fileMenu.addSeparator();
+
+        JMenuItem backupItem = new JMenuItem("Back Up Now");
+        backupItem.setToolTipText("Copy the catalogue to the backup folder while the library stays open");
+        backupItem.addActionListener(e -> backUpNow());
+        fileMenu.add(backupItem);
+
+        JMenuItem restoreItem = new JMenuItem("Restore From Backup...");
+        restoreItem.setToolTipText("Replace the catalogue with a previous backup");
+        restoreItem.addActionListener(e -> restoreFromBackup());
+        fileMenu.add(restoreItem);
+
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(fileMenu);
+        return menuBar;
+    }
+
     /**
      * Create the add book panel
      */
@@ -179,12 +261,36 @@ public class LibraryGUI extends JFrame {
         panel.add(new JLabel("Search:"));
         searchField.setPreferredSize(new Dimension(200, 25));
         panel.add(searchField);
+        panel.add(fuzzySearchBox);
         panel.add(searchButton);
         panel.add(refreshButton);
 
         return panel;
     }
 
+    /**
+     * Create the filter and paging panel
+     */
+    private JPanel createFilterPanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panel.setBorder(BorderFactory.createTitledBorder("Filter Books"));
+
+        panel.add(new JLabel("Status:"));
+        panel.add(statusFilter);
+        panel.add(new JLabel("Author:"));
+        authorFilterField.setPreferredSize(new Dimension(150, 25));
+        panel.add(authorFilterField);
+        panel.add(new JLabel("Title starts with:"));
+        titlePrefixField.setPreferredSize(new Dimension(150, 25));
+        panel.add(titlePrefixField);
+        panel.add(filterButton);
+        panel.add(previousPageButton);
+        panel.add(pageLabel);
+        panel.add(nextPageButton);
+
+        return panel;
+    }
+
     /**
      * Create the action buttons panel
      */
@@ -219,7 +325,33 @@ public class LibraryGUI extends JFrame {
         searchButton.addActionListener(new SearchBookListener());
 
         // Refresh button
-        refreshButton.addActionListener(e -> refreshTable());
+        refreshButton.addActionListener(e -> {
+            searchField.setText("");
+            refreshTable();
+        });
+
+        // Filter and paging buttons
+        filterButton.addActionListener(e -> applyFilter());
+        authorFilterField.addActionListener(e -> applyFilter());
+        titlePrefixField.addActionListener(e -> applyFilter());
+        previousPageButton.addActionListener(e -> showPage(currentQuery.getPage() - 1));
+        nextPageButton.addActionListener(e -> showPage(currentQuery.getPage() + 1));
+
+        // Column header clicks sort in the database
+        bookTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int viewColumn = bookTable.getTableHeader().columnAtPoint(e.getPoint());
+                if (viewColumn != -1) {
+                    sortByColumn(bookTable.convertColumnIndexToModel(viewColumn));
+                }
+            }
+        });
+
+        // Autocomplete from existing titles and authors
+        AutoCompleteSupport.install(titleField, titleIndex);
+        AutoCompleteSupport.install(authorField, authorIndex);
+        AutoCompleteSupport.install(authorFilterField, authorIndex);
 
         // Enter key listeners for text fields
         titleField.addActionListener(new AddBookListener());
@@ -234,30 +366,489 @@ public class LibraryGUI extends JFrame {
         });
     }
 
+    /**
+     * Load the catalogue into fresh fuzzy search and autocomplete indexes in the background
+     * and swap them in when done, so a large catalogue does not freeze the window
+     * Changes that arrive meanwhile are replayed onto the new indexes before the swap
+     */
+    private void buildSearchIndexes() {
+        TrigramIndex builtFuzzy = new TrigramIndex();
+        PrefixIndex builtTitles = new PrefixIndex();
+        PrefixIndex builtAuthors = new PrefixIndex();
+        eventsDuringBuild.clear();
+        indexBuild = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                for (Book book : bookDAO.getAllBooks()) {
+                    builtFuzzy.add(book);
+                    builtTitles.add(book.getTitle());
+                    builtAuthors.add(book.getAuthor());
+                }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                if (indexBuild != this) {
+                    return; // A later reload started another build
+                }
+                indexBuild = null;
+                try {
+                    get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    System.err.println("Could not build the search indexes: " + cause.getMessage());
+                    eventsDuringBuild.clear();
+                    return; // Keep the previous indexes
+                }
+                fuzzyIndex.replaceWith(builtFuzzy);
+                titleIndex.replaceWith(builtTitles);
+                authorIndex.replaceWith(builtAuthors);
+                for (BookChangeEvent event : eventsDuringBuild) {
+                    applyToIndexes(event);
+                }
+                eventsDuringBuild.clear();
+            }
+        };
+        indexBuild.execute();
+    }
+
+    /**
+     * Apply a change made at this or another desk to the search indexes and the visible page
+     * Events can overlap with the action that caused them, so each case checks before acting
+     */
+    private void applyChange(BookChangeEvent event) {
+        if (event.getType() == BookChangeEvent.Type.RELOAD) {
+            buildSearchIndexes();
+            refreshTable();
+            return;
+        }
+        boolean added = applyToIndexes(event);
+        if (indexBuild != null) {
+            eventsDuringBuild.add(event);
+        }
+        int modelRow = findModelRow(event.getBookId());
+        switch (event.getType()) {
+            case ADDED:
+                if (added && modelRow == -1 && searchField.getText().trim().isEmpty()) {
+                    pageRefreshTimer.restart();
+                }
+                break;
+            case UPDATED:
+                if (modelRow != -1) {
+                    Book book = event.getBook();
+                    tableModel.setValueAt(book.getTitle(), modelRow, 1);
+                    tableModel.setValueAt(book.getAuthor(), modelRow, 2);
+                    tableModel.setValueAt(book.isAvailable() ? "Available" : "Not Available", modelRow, 3);
+                    updateButtonStates();
+                }
+                break;
+            case DELETED:
+                if (modelRow != -1) {
+                    tableModel.removeRow(modelRow);
+                    updateButtonStates();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Apply a change to the search indexes; repeating a change they already reflect is harmless
+     * @return true if the change added a book the indexes did not know yet
+     */
+    private boolean applyToIndexes(BookChangeEvent event) {
+        Book indexed = fuzzyIndex.get(event.getBookId());
+        switch (event.getType()) {
+            case ADDED:
+                if (indexed != null) {
+                    return false;
+                }
+                fuzzyIndex.add(event.getBook());
+                titleIndex.add(event.getBook().getTitle());
+                authorIndex.add(event.getBook().getAuthor());
+                return true;
+            case UPDATED:
+                Book book = event.getBook();
+                if (indexed != null && !indexed.getTitle().equals(book.getTitle())) {
+                    titleIndex.remove(indexed.getTitle());
+                    titleIndex.add(book.getTitle());
+                }
+                if (indexed != null && !indexed.getAuthor().equals(book.getAuthor())) {
+                    authorIndex.remove(indexed.getAuthor());
+                    authorIndex.add(book.getAuthor());
+                }
+                fuzzyIndex.update(book);
+                return false;
+            case DELETED:
+                if (indexed != null) {
+                    fuzzyIndex.remove(event.getBookId());
+                    titleIndex.remove(indexed.getTitle());
+                    authorIndex.remove(indexed.getAuthor());
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return Model row showing the given book, or -1 if it is not on the current page
+     */
+    private int findModelRow(int bookId) {
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            if ((int) tableModel.getValueAt(row, 0) == bookId) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add every book listed in a CSV file in the background
+     * Each line holds a title and an author; fields containing commas can be double-quoted
+     */
+    private void importBooks() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+
+        new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() throws Exception {
+                List<Book> books = new ArrayList<>();
+                int lines = 0;
+                for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    List<String> fields = parseCsvLine(line);
+                    if (lines == 0 && books.isEmpty() && fields.get(0).equalsIgnoreCase("title")) {
+                        continue; // Header row
+                    }
+                    lines++;
+                    if (fields.size() >= 2 && !fields.get(0).isEmpty() && !fields.get(1).isEmpty()) {
+                        books.add(new Book(0, fields.get(0), fields.get(1), true));
+                    }
+                }
+                return new int[]{bookDAO.addBooks(books).size(), lines};
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    int[] counts = get();
+                    JOptionPane.showMessageDialog(LibraryGUI.this,
+                        "Imported " + counts[0] + " of " + counts[1] + " books.\n"
+                            + (counts[1] - counts[0]) + " were duplicates or incomplete.",
+                        "Import", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(LibraryGUI.this, "Import failed: " + cause.getMessage(),
+                        "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Split one CSV line into trimmed fields, honouring double quotes
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Run an online backup in the background so the table stays usable meanwhile
+     */
+    private void backUpNow() {
+        new SwingWorker<List<BackupService.BackupResult>, Void>() {
+            @Override
+            protected List<BackupService.BackupResult> doInBackground() throws Exception {
+                return BackupService.backupAll();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    StringBuilder message = new StringBuilder("Backup completed:");
+                    for (BackupService.BackupResult result : get()) {
+                        message.append("\n").append(result);
+                    }
+                    JOptionPane.showMessageDialog(LibraryGUI.this, message.toString(),
+                        "Backup", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(LibraryGUI.this, "Backup failed: " + cause.getMessage(),
+                        "Backup Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Restore one shard from a chosen backup file in the background
+     * The table and search indexes reload when the change feed reports the restore
+     */
+    private void restoreFromBackup() {
+        JFileChooser chooser = new JFileChooser(BackupService.getBackupDirectory().toFile());
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        int result = JOptionPane.showConfirmDialog(this,
+            "Replace the current catalogue with " + file.getName() + "?",
+            "Confirm Restore",
+            JOptionPane.YES_NO_OPTION,
+            JOptionPane.WARNING_MESSAGE);
+        if (result != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                BackupService.restore(file);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    ChangeFeed.pollSoon();
+                    JOptionPane.showMessageDialog(LibraryGUI.this, "Catalogue restored from " + file.getName(),
+                        "Restore", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(LibraryGUI.this, "Restore failed: " + cause.getMessage(),
+                        "Restore Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
     /**
      * Update button states based on table selection
      */
     private void updateButtonStates() {
-        int selectedRow = bookTable.getSelectedRow();
-        boolean hasSelection = selectedRow != -1;
-        
-        borrowButton.setEnabled(hasSelection);
-        returnButton.setEnabled(hasSelection);
-        deleteButton.setEnabled(hasSelection);
-
-        if (hasSelection) {
-            int modelRow = bookTable.convertRowIndexToModel(selectedRow);
+        boolean anyAvailable = false;
+        boolean anyBorrowed = false;
+        int[] modelRows = selectedModelRows();
+        for (int modelRow : modelRows) {
             String status = tableModel.getValueAt(modelRow, 3).toString();
-            borrowButton.setEnabled(status.equals("Available"));
-            returnButton.setEnabled(status.equals("Not Available"));
+            anyAvailable |= status.equals("Available");
+            anyBorrowed |= status.equals("Not Available");
+        }
+
+        borrowButton.setEnabled(anyAvailable);
+        returnButton.setEnabled(anyBorrowed);
+        deleteButton.setEnabled(modelRows.length > 0);
+    }
+
+    /**
+     * @return Model indexes of all selected rows, in ascending order
+     */
+    private int[] selectedModelRows() {
+        int[] rows = bookTable.getSelectedRows();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = bookTable.convertRowIndexToModel(rows[i]);
         }
+        Arrays.sort(rows);
+        return rows;
     }
 
     /**
-     * Refresh the table with current data
+     * Borrow or return every selected book that is in the opposite state
+     * All rows go to the database as one batch and the table is patched in place
+     * Books are tracked by id: change events can reshape the table while a dialog is open
+     */
+    private void changeSelectedAvailability(boolean available) {
+        String fromStatus = available ? "Not Available" : "Available";
+        List<Integer> bookIds = new ArrayList<>();
+        for (int modelRow : selectedModelRows()) {
+            if (tableModel.getValueAt(modelRow, 3).toString().equals(fromStatus)) {
+                bookIds.add((int) tableModel.getValueAt(modelRow, 0));
+            }
+        }
+        if (bookIds.isEmpty()) {
+            JOptionPane.showMessageDialog(LibraryGUI.this,
+                available ? "The selected books are already available." : "The selected books are already borrowed.",
+                available ? "Cannot Return" : "Cannot Borrow",
+                JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        Map<Integer, Boolean> outcomes = bookDAO.updateAvailability(bookIds, available);
+        Map<Integer, Boolean> newStatuses = new HashMap<>();
+        List<Integer> skippedIds = new ArrayList<>();
+        int changed = 0;
+        for (int bookId : bookIds) {
+            if (outcomes.get(bookId)) {
+                newStatuses.put(bookId, available);
+                changed++;
+            } else {
+                skippedIds.add(bookId);
+            }
+        }
+
+        // Rows that were not updated were probably changed at another desk; read back just their status
+        if (!skippedIds.isEmpty()) {
+            newStatuses.putAll(bookDAO.getAvailability(skippedIds));
+        }
+
+        // Patch just the status cells of the rows still showing these books
+        for (Map.Entry<Integer, Boolean> entry : newStatuses.entrySet()) {
+            int modelRow = findModelRow(entry.getKey());
+            if (modelRow != -1) {
+                tableModel.setValueAt(entry.getValue() ? "Available" : "Not Available", modelRow, 3);
+            }
+        }
+        updateButtonStates();
+
+        String verb = available ? "returned" : "borrowed";
+        showBatchSummary(changed, bookIds.size(), verb);
+    }
+
+    /**
+     * Delete every selected book after one confirmation
+     * All rows go to the database as one batch and removed from the table in place
+     * The selection is read before the dialog, since change events may move rows meanwhile
+     */
+    private void deleteSelectedBooks() {
+        int[] modelRows = selectedModelRows();
+        if (modelRows.length == 0) {
+            return;
+        }
+        List<Integer> bookIds = new ArrayList<>();
+        for (int modelRow : modelRows) {
+            bookIds.add((int) tableModel.getValueAt(modelRow, 0));
+        }
+
+        String prompt = modelRows.length == 1
+            ? "Are you sure you want to delete the book: " + tableModel.getValueAt(modelRows[0], 1) + "?"
+            : "Are you sure you want to delete these " + modelRows.length + " books?";
+        int result = JOptionPane.showConfirmDialog(LibraryGUI.this,
+            prompt,
+            "Confirm Deletion",
+            JOptionPane.YES_NO_OPTION,
+            JOptionPane.QUESTION_MESSAGE);
+        if (result != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        Map<Integer, Boolean> outcomes = bookDAO.deleteBooks(bookIds);
+
+        // Remove the rows still showing deleted books; the change feed may have removed some already
+        // The search indexes catch up when the change feed delivers the deletions
+        int deleted = 0;
+        for (int bookId : bookIds) {
+            if (outcomes.get(bookId)) {
+                int modelRow = findModelRow(bookId);
+                if (modelRow != -1) {
+                    tableModel.removeRow(modelRow);
+                }
+                deleted++;
+            }
+        }
+        updateButtonStates();
+
+        showBatchSummary(deleted, bookIds.size(), "deleted");
+    }
+
+    /**
+     * Show one summary dialog for a batch action
+     */
+    private void showBatchSummary(int succeeded, int attempted, String verb) {
+        if (succeeded == 0) {
+            return; // Errors were already reported by the DAO or nothing changed
+        }
+        String message = attempted == 1
+            ? "Book " + verb + " successfully!"
+            : succeeded + " of " + attempted + " books " + verb + " successfully!";
+        if (succeeded < attempted) {
+            message += "\n" + (attempted - succeeded) + " were changed elsewhere or failed.";
+        }
+        JOptionPane.showMessageDialog(LibraryGUI.this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Refresh the table with the current page of data
      */
     private void refreshTable() {
-        refreshTable(bookDAO.getAllBooks());
+        int total = bookDAO.countBooks(currentQuery);
+        int pageCount = Math.max(1, (total + currentQuery.getPageSize() - 1) / currentQuery.getPageSize());
+        if (currentQuery.getPage() >= pageCount) {
+            currentQuery.setPage(pageCount - 1);
+        }
+
+        refreshTable(bookDAO.findBooks(currentQuery));
+
+        pageLabel.setText("Page " + (currentQuery.getPage() + 1) + " of " + pageCount + " (" + total + " books)"
+            + (bookDAO.isOffline() ? " - offline, cached" : ""));
+        previousPageButton.setEnabled(currentQuery.getPage() > 0);
+        nextPageButton.setEnabled(currentQuery.getPage() < pageCount - 1);
+    }
+
+    /**
+     * Read the filter controls into the current query and reload from the first page
+     */
+    private void applyFilter() {
+        String status = statusFilter.getSelectedItem().toString();
+        currentQuery.setAvailable(status.equals("All") ? null : status.equals("Available"));
+        currentQuery.setAuthor(authorFilterField.getText().trim());
+        currentQuery.setTitlePrefix(titlePrefixField.getText().trim());
+        currentQuery.setPage(0);
+        searchField.setText("");
+        refreshTable();
+    }
+
+    /**
+     * Show a specific page of the current query
+     */
+    private void showPage(int page) {
+        currentQuery.setPage(page);
+        refreshTable();
+    }
+
+    /**
+     * Sort the current query by a table column, toggling direction on repeat clicks
+     */
+    private void sortByColumn(int modelColumn) {
+        BookQuery.SortField field;
+        switch (modelColumn) {
+            case 0: field = BookQuery.SortField.ID; break;
+            case 1: field = BookQuery.SortField.TITLE; break;
+            case 2: field = BookQuery.SortField.AUTHOR; break;
+            case 3: field = BookQuery.SortField.STATUS; break;
+            default: return;
+        }
+        currentQuery.toggleSort(field);
+        searchField.setText("");
+        refreshTable();
     }
 
     /**
@@ -304,70 +895,21 @@ public class LibraryGUI extends JFrame {
     private class BorrowBookListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            int selectedRow = bookTable.getSelectedRow();
-            if (selectedRow != -1) {
-                int modelRow = bookTable.convertRowIndexToModel(selectedRow);
-                int bookId = (int) tableModel.getValueAt(modelRow, 0);
-                String status = tableModel.getValueAt(modelRow, 3).toString();
-                
-                if (status.equals("Available")) {
-                    if (bookDAO.updateAvailability(bookId, false)) {
-                        refreshTable();
-                    }
-                } else {
-                    JOptionPane.showMessageDialog(LibraryGUI.this,
-                        "This book is already borrowed.",
-                        "Cannot Borrow",
-                        JOptionPane.INFORMATION_MESSAGE);
-                }
-            }
+            changeSelectedAvailability(false);
         }
     }
 
     private class ReturnBookListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            int selectedRow = bookTable.getSelectedRow();
-            if (selectedRow != -1) {
-                int modelRow = bookTable.convertRowIndexToModel(selectedRow);
-                int bookId = (int) tableModel.getValueAt(modelRow, 0);
-                String status = tableModel.getValueAt(modelRow, 3).toString();
-                
-                if (status.equals("Not Available")) {
-                    if (bookDAO.updateAvailability(bookId, true)) {
-                        refreshTable();
-                    }
-                } else {
-                    JOptionPane.showMessageDialog(LibraryGUI.this,
-                        "This book is already available.",
-                        "Cannot Return",
-                        JOptionPane.INFORMATION_MESSAGE);
-                }
-            }
+            changeSelectedAvailability(true);
         }
     }
 
     private class DeleteBookListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            int selectedRow = bookTable.getSelectedRow();
-            if (selectedRow != -1) {
-                int modelRow = bookTable.convertRowIndexToModel(selectedRow);
-                int bookId = (int) tableModel.getValueAt(modelRow, 0);
-                String title = tableModel.getValueAt(modelRow, 1).toString();
-                
-                int result = JOptionPane.showConfirmDialog(LibraryGUI.this,
-                    "Are you sure you want to delete the book: " + title + "?",
-                    "Confirm Deletion",
-                    JOptionPane.YES_NO_OPTION,
-                    JOptionPane.QUESTION_MESSAGE);
-                
-                if (result == JOptionPane.YES_OPTION) {
-                    if (bookDAO.deleteBook(bookId)) {
-                        refreshTable();
-                    }
-                }
-            }
+            deleteSelectedBooks();
         }
     }
 
@@ -378,8 +920,13 @@ public class LibraryGUI extends JFrame {
             if (searchTerm.isEmpty()) {
                 refreshTable();
             } else {
-                List<Book> searchResults = bookDAO.searchBooks(searchTerm);
+                List<Book> searchResults = fuzzySearchBox.isSelected()
+                    ? fuzzyIndex.search(searchTerm, FUZZY_RESULT_LIMIT)
+                    : bookDAO.searchBooks(searchTerm);
                 refreshTable(searchResults);
+                pageLabel.setText(searchResults.size() + " search results");
+                previousPageButton.setEnabled(false);
+                nextPageButton.setEnabled(false);
             }
         }
     }
@@ -0,0 +1,86 @@
+package com.library.search;
+
+/**
+ * Fixed-size Bloom filter over strings
+ * mightContain never answers false for a value that was put, and answers true for an
+ * absent value with roughly the configured false positive rate while under capacity
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int capacity;
+    private int size = 0;
+
+    /**
+     * @param capacity Number of values the filter is sized for
+     * @param falsePositiveRate Target false positive rate at capacity, e.g. 0.01
+     */
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        this.capacity = Math.max(1, capacity);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * ln2));
+        this.bits = new long[(bitCount + 63) / 64];
+    }
+
+    /**
+     * Record a value
+     * @param value Value to add
+     */
+    public synchronized void put(String value) {
+        long hash = hash(value);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(hash + i * step, (long) bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        size++;
+    }
+
+    /**
+     * @param value Value to look up
+     * @return false if the value was definitely never put, true if it may have been
+     */
+    public synchronized boolean mightContain(String value) {
+        long hash = hash(value);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(hash + i * step, (long) bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true once more values were put than the filter was sized for,
+     *         after which the false positive rate climbs and it should be rebuilt larger
+     */
+    public synchronized boolean isSaturated() {
+        return size > capacity;
+    }
+
+    /**
+     * 64-bit FNV-1a over the string's characters
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer from SplitMix64, giving an independent second hash for double hashing
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,110 @@
+package com.library.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory sorted index of distinct strings for prefix autocomplete
+ * Lookups are a range scan over a sorted map, so no database round trip is needed per keystroke
+ */
+public class PrefixIndex {
+    private NavigableMap<String, Suggestion> entries = new TreeMap<>();
+
+    /**
+     * Add one occurrence of a value, e.g. when a book with this title is added
+     * @param value Title or author as entered
+     */
+    public synchronized void add(String value) {
+        String key = key(value);
+        if (key.isEmpty()) {
+            return;
+        }
+        entries.computeIfAbsent(key, k -> new Suggestion(value.trim().replaceAll("\\s+", " "))).count++;
+    }
+
+    /**
+     * Remove one occurrence of a value, e.g. when a book with this title is deleted
+     * The value stops being suggested once no book uses it
+     * @param value Title or author as entered
+     */
+    public synchronized void remove(String value) {
+        String key = key(value);
+        Suggestion suggestion = entries.get(key);
+        if (suggestion != null && --suggestion.count <= 0) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Suggest existing values starting with a prefix, ignoring case
+     * @param prefix Text typed so far
+     * @param limit Maximum number of suggestions
+     * @return Matching values in alphabetical order
+     */
+    public synchronized List<String> suggest(String prefix, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        String from = key(prefix);
+        if (from.isEmpty()) {
+            return suggestions;
+        }
+        String to = from + Character.MAX_VALUE;
+        for (Map.Entry<String, Suggestion> entry : entries.subMap(from, true, to, false).entrySet()) {
+            if (suggestions.size() >= limit) {
+                break;
+            }
+            suggestions.add(entry.getValue().display);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Drop every value, e.g. before reloading a restored catalogue
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Take over the contents of another index, e.g. one built off the event thread
+     * The other index must not be used afterwards
+     * @param other Freshly built index
+     */
+    public synchronized void replaceWith(PrefixIndex other) {
+        synchronized (other) {
+            entries = other.entries;
+        }
+    }
+
+    /**
+     * @return Number of distinct values
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Case-fold and collapse whitespace so "The  Hobbit" and "the hobbit" share one entry
+     */
+    private static String key(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Display form of a value and the number of books using it
+     */
+    private static class Suggestion {
+        final String display;
+        int count;
+
+        Suggestion(String display) {
+            this.display = display;
+        }
+    }
+}
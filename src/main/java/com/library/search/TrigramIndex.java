@@ -0,0 +1,419 @@
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory trigram index over book titles and authors
+ * Provides typo-tolerant, relevance-ranked search without scanning every book
+ */
+public class TrigramIndex {
+    /** Fraction of the query's trigrams a book must share to be considered a match */
+    private static final double MIN_SIMILARITY = 0.4;
+
+    private Map<Integer, Entry> books = new HashMap<>();
+    private Map<String, Postings> postings = new HashMap<>();
+    /** Removed books whose postings have not been cleaned up yet */
+    private Map<Integer, Book> removedBooks = new HashMap<>();
+    private int stalePostings = 0;
+
+    /**
+     * Index a collection of books, e.g. the full catalogue at startup
+     * @param catalogue Books to index
+     */
+    public synchronized void addAll(Collection<Book> catalogue) {
+        for (Book book : catalogue) {
+            add(book);
+        }
+    }
+
+    /**
+     * Index a single book
+     * @param book Book to index
+     */
+    public synchronized void add(Book book) {
+        Book stale = removedBooks.remove(book.getId());
+        if (stale != null) {
+            purge(stale); // The id is back, so its old postings would be credited to the new book
+        }
+        Set<String> trigrams = trigrams(indexedText(book));
+        Entry previous = books.put(book.getId(), new Entry(book, trigrams.size()));
+        if (previous != null) {
+            if (!indexedText(previous.book).equals(indexedText(book))) {
+                rebuild(); // Text edits are rare; drop the old postings outright
+            }
+            return; // Otherwise only the status changed and postings are still valid
+        }
+        for (String trigram : trigrams) {
+            postings.computeIfAbsent(trigram, t -> new Postings()).add(book.getId());
+        }
+    }
+
+    /**
+     * Replace the indexed copy of a book, e.g. after a status change
+     * @param book Updated book
+     */
+    public synchronized void update(Book book) {
+        add(book);
+    }
+
+    /**
+     * Remove a book from the index
+     * Postings are cleaned up lazily and compacted once enough have gone stale
+     * @param bookId ID of the book to remove
+     */
+    public synchronized void remove(int bookId) {
+        Entry removed = books.remove(bookId);
+        if (removed == null) {
+            return;
+        }
+        removedBooks.put(bookId, removed.book);
+        stalePostings += removed.trigramCount;
+        if (stalePostings > books.size() * 8 + 1024) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Drop every indexed book, e.g. before reloading a restored catalogue
+     */
+    public synchronized void clear() {
+        books.clear();
+        postings.clear();
+        removedBooks.clear();
+        stalePostings = 0;
+    }
+
+    /**
+     * Take over the contents of another index, e.g. one built off the event thread
+     * The other index must not be used afterwards
+     * @param other Freshly built index
+     */
+    public synchronized void replaceWith(TrigramIndex other) {
+        synchronized (other) {
+            books = other.books;
+            postings = other.postings;
+            removedBooks = other.removedBooks;
+            stalePostings = other.stalePostings;
+        }
+    }
+
+    /**
+     * @param bookId ID of the book
+     * @return The indexed version of the book, or null if it is not indexed
+     */
+    public synchronized Book get(int bookId) {
+        Entry entry = books.get(bookId);
+        return entry == null ? null : entry.book;
+    }
+
+    /**
+     * @return Number of indexed books
+     */
+    public synchronized int size() {
+        return books.size();
+    }
+
+    /**
+     * Find the books whose title or author best match a possibly misspelled query
+     * @param query Search text
+     * @param limit Maximum number of results to return
+     * @return Matching books, best match first
+     */
+    public synchronized List<Book> search(String query, int limit) {
+        Set<String> queryTrigrams = trigrams(normalize(query));
+        if (queryTrigrams.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        int minimum = Math.max(1, (int) Math.ceil(MIN_SIMILARITY * queryTrigrams.size()));
+        List<Postings> lists = new ArrayList<>();
+        for (String trigram : queryTrigrams) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.size > 0) {
+                list.sort();
+                lists.add(list);
+            }
+        }
+        if (lists.size() < minimum) {
+            return new ArrayList<>();
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        // Books sharing more trigrams always rank higher, so look for near-complete matches
+        // first and only lower the bar while fewer than `limit` books clear it; a high bar
+        // draws candidates from just the shortest lists, even when every trigram is common
+        PriorityQueue<Match> best;
+        int threshold = lists.size();
+        while (true) {
+            best = new PriorityQueue<>(limit + 1, Match.ORDER);
+            collect(lists, threshold, best, limit, queryTrigrams.size());
+            if (best.size() == limit || threshold == minimum) {
+                break;
+            }
+            threshold = Math.max(minimum, threshold - Math.max(1, lists.size() / 4));
+        }
+
+        List<Book> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            results.add(best.poll().book);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    /**
+     * Offer every book found in at least `required` of the posting lists, shortest first
+     * Such a book must be in one of the (lists - required + 1) shortest lists, so only those
+     * are merged to produce candidates; the long lists are checked per candidate with
+     * cursors that only move forward, and a candidate is dropped once it cannot reach
+     * `required`. Once `limit` matches are kept the bar rises to the weakest kept count.
+     */
+    private void collect(List<Postings> bySize, int required, PriorityQueue<Match> best, int limit, int queryCount) {
+        int candidateLists = bySize.size() - required + 1;
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparingInt(Cursor::current));
+        for (int i = 0; i < candidateLists; i++) {
+            heads.add(new Cursor(bySize.get(i)));
+        }
+        Cursor[] longLists = new Cursor[bySize.size() - candidateLists];
+        for (int i = 0; i < longLists.length; i++) {
+            longLists[i] = new Cursor(bySize.get(candidateLists + i));
+        }
+
+        while (!heads.isEmpty()) {
+            int id = heads.peek().current();
+            int shared = 0;
+            while (!heads.isEmpty() && heads.peek().current() == id) {
+                Cursor cursor = heads.poll();
+                shared++;
+                if (cursor.advanceTo(id + 1)) {
+                    heads.add(cursor);
+                }
+            }
+            for (int i = 0; i < longLists.length && shared + longLists.length - i >= required; i++) {
+                if (longLists[i].contains(id)) {
+                    shared++;
+                }
+            }
+            if (shared >= required) {
+                offer(best, limit, id, shared, queryCount);
+                if (best.size() == limit) {
+                    required = Math.max(required, best.peek().shared);
+                }
+            }
+        }
+    }
+
+    /**
+     * Score a book sharing enough trigrams and keep it if it is among the best `limit`
+     */
+    private void offer(PriorityQueue<Match> best, int limit, int id, int shared, int queryCount) {
+        Entry entry = books.get(id);
+        if (entry == null) {
+            return; // Stale posting for a removed book
+        }
+        double containment = (double) shared / queryCount;
+        double jaccard = (double) shared / (queryCount + entry.trigramCount - shared);
+        Match match = new Match(entry.book, shared, containment, jaccard);
+        if (best.size() < limit) {
+            best.offer(match);
+        } else if (Match.ORDER.compare(match, best.peek()) > 0) {
+            best.poll();
+            best.offer(match);
+        }
+    }
+
+    /**
+     * Normalize text for matching: lower case, letters and digits only, single spaces
+     * @param text Raw text
+     * @return Normalized text
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{Nd}]+", " ")
+                .trim();
+    }
+
+    /**
+     * Split normalized text into word-padded trigrams, e.g. "cat" -> "  c", " ca", "cat", "at "
+     * @param normalized Normalized text
+     * @return Distinct trigrams in order of appearance
+     */
+    static Set<String> trigrams(String normalized) {
+        Set<String> result = new LinkedHashSet<>();
+        if (normalized.isEmpty()) {
+            return result;
+        }
+        for (String word : normalized.split(" ")) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                result.add(padded.substring(i, i + 3));
+            }
+        }
+        return result;
+    }
+
+    private static String indexedText(Book book) {
+        return normalize(book.getTitle() + " " + book.getAuthor());
+    }
+
+    /**
+     * Rebuild all posting lists from the live books, dropping stale entries
+     */
+    private void rebuild() {
+        postings.clear();
+        removedBooks.clear();
+        stalePostings = 0;
+        for (Entry entry : books.values()) {
+            for (String trigram : trigrams(indexedText(entry.book))) {
+                postings.computeIfAbsent(trigram, t -> new Postings()).add(entry.book.getId());
+            }
+        }
+    }
+
+    /**
+     * Drop a removed book's postings right away
+     */
+    private void purge(Book stale) {
+        Set<String> trigrams = trigrams(indexedText(stale));
+        for (String trigram : trigrams) {
+            Postings list = postings.get(trigram);
+            if (list != null) {
+                list.remove(stale.getId());
+            }
+        }
+        stalePostings -= trigrams.size();
+    }
+
+    /**
+     * Indexed book with its distinct trigram count, used for Jaccard scoring
+     */
+    private static class Entry {
+        final Book book;
+        final int trigramCount;
+
+        Entry(Book book, int trigramCount) {
+            this.book = book;
+            this.trigramCount = trigramCount;
+        }
+    }
+
+    /**
+     * Growable list of book ids sharing one trigram, sorted lazily for binary search
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+        private boolean sorted = true;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (size > 0 && ids[size - 1] > id) {
+                sorted = false;
+            }
+            ids[size++] = id;
+        }
+
+        void sort() {
+            if (!sorted) {
+                Arrays.sort(ids, 0, size);
+                sorted = true;
+            }
+        }
+
+        void remove(int id) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] != id) {
+                    ids[kept++] = ids[i];
+                }
+            }
+            size = kept;
+        }
+    }
+
+    /**
+     * Read position in one sorted posting list
+     */
+    private static class Cursor {
+        private final Postings list;
+        private int position = 0;
+
+        Cursor(Postings list) {
+            this.list = list;
+        }
+
+        int current() {
+            return list.ids[position];
+        }
+
+        /**
+         * @return true if the list holds id; later calls must ask for larger ids
+         */
+        boolean contains(int id) {
+            return position < list.size && advanceTo(id) && list.ids[position] == id;
+        }
+
+        /**
+         * Move to the first id at or after target, galloping then binary searching
+         * @return false once the list is exhausted
+         */
+        boolean advanceTo(int target) {
+            int[] ids = list.ids;
+            int low = position;
+            int step = 1;
+            while (low + step < list.size && ids[low + step] < target) {
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, list.size);
+            // ids[low] may still be below target; the answer lies in (low, high] or at low
+            if (ids[low] >= target) {
+                position = low;
+                return true;
+            }
+            int found = Arrays.binarySearch(ids, low + 1, high, target);
+            position = found >= 0 ? found : -found - 1;
+            return position < list.size;
+        }
+    }
+
+    /**
+     * Scored candidate; ordered worst first so the heap head is the one to evict
+     */
+    private static class Match {
+        static final Comparator<Match> ORDER = Comparator
+                .comparingDouble((Match m) -> m.containment)
+                .thenComparingDouble(m -> m.jaccard)
+                .thenComparing(m -> -m.book.getId());
+
+        final Book book;
+        final int shared;
+        final double containment;
+        final double jaccard;
+
+        Match(Book book, int shared, double containment, double jaccard) {
+            this.book = book;
+            this.shared = shared;
+            this.containment = containment;
+            this.jaccard = jaccard;
+        }
+    }
+}
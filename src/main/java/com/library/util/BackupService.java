@@ -0,0 +1,405 @@
+package com.library.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Online backup and restore of the catalogue while the application keeps running
+ * SQLite shards use the driver's "backup to" command, which drives SQLite's incremental
+ * backup API a few pages per step so other connections can read and write in between.
+ * MySQL shards are exported from a consistent InnoDB snapshot, which does not block writers.
+ */
+public class BackupService {
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    /** Backup file name: shard name, STAMP and extension; shard names may contain '-' themselves */
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("(.+)-\\d{8}-\\d{6}\\.(db|sql)");
+    private static final int EXPORT_CHUNK = 1000;
+    private static final long PROBE_INTERVAL_MILLIS = 50;
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+    private static ScheduledExecutorService scheduler;
+
+    private BackupService() {
+    }
+
+    /**
+     * Outcome of backing up one shard, including the latency seen by foreground queries
+     */
+    public static class BackupResult {
+        private final Shard shard;
+        private final Path file;
+        private final long durationMillis;
+        private final double baselineProbeMillis;
+        private final double averageProbeMillis;
+        private final double maxProbeMillis;
+
+        BackupResult(Shard shard, Path file, long durationMillis, double baselineProbeMillis,
+                     double averageProbeMillis, double maxProbeMillis) {
+            this.shard = shard;
+            this.file = file;
+            this.durationMillis = durationMillis;
+            this.baselineProbeMillis = baselineProbeMillis;
+            this.averageProbeMillis = averageProbeMillis;
+            this.maxProbeMillis = maxProbeMillis;
+        }
+
+        public Shard getShard() {
+            return shard;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public double getBaselineProbeMillis() {
+            return baselineProbeMillis;
+        }
+
+        public double getAverageProbeMillis() {
+            return averageProbeMillis;
+        }
+
+        public double getMaxProbeMillis() {
+            return maxProbeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s in %d ms (lookup latency %.1f ms before, %.1f ms avg / %.1f ms max during)",
+                shard.getName(), file.getFileName(), durationMillis,
+                baselineProbeMillis, averageProbeMillis, maxProbeMillis);
+        }
+    }
+
+    /**
+     * @return Directory backups are written to, from backup.dir
+     */
+    public static Path getBackupDirectory() {
+        return Paths.get(DatabaseConnection.getProperty("backup.dir", "backups"));
+    }
+
+    /**
+     * Start periodic backups if backup.intervalMinutes is set above zero
+     */
+    public static synchronized void startScheduledBackups() {
+        long interval = Long.parseLong(DatabaseConnection.getProperty("backup.intervalMinutes", "0"));
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "scheduled-backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                for (BackupResult result : backupAll()) {
+                    System.out.println("Scheduled backup: " + result);
+                }
+            } catch (IOException | SQLException e) {
+                System.err.println("Scheduled backup failed: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Back up every shard into the backup directory and prune old snapshots
+     * @return One result per shard
+     * @throws IOException if the backup directory cannot be written
+     * @throws SQLException if a shard cannot be copied
+     */
+    public static List<BackupResult> backupAll() throws IOException, SQLException {
+        if (!running.compareAndSet(false, true)) {
+            throw new SQLException("A backup is already running");
+        }
+        try {
+            Path dir = getBackupDirectory();
+            Files.createDirectories(dir);
+            String stamp = LocalDateTime.now().format(STAMP);
+            List<BackupResult> results = new ArrayList<>();
+            for (Shard shard : DatabaseConnection.getShards()) {
+                String extension = shard.isSqlite() ? ".db" : ".sql";
+                results.add(backup(shard, dir.resolve(shard.getName() + "-" + stamp + extension)));
+                prune(dir, shard);
+            }
+            return results;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Back up one shard while measuring foreground lookup latency
+     */
+    private static BackupResult backup(Shard shard, Path target) throws SQLException, IOException {
+        LatencyProbe probe = new LatencyProbe(shard);
+        double baseline = probe.sampleBaseline();
+        Thread probeThread = new Thread(probe, "backup-latency-probe");
+        probeThread.setDaemon(true);
+        probeThread.start();
+
+        long start = System.nanoTime();
+        try {
+            if (shard.isSqlite()) {
+                try (Connection conn = DatabaseConnection.getConnection(shard);
+                     Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("backup to " + quote(target));
+                }
+            } else {
+                exportSnapshot(shard, target);
+            }
+        } finally {
+            probe.stop();
+            try {
+                probeThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long duration = (System.nanoTime() - start) / 1_000_000;
+        return new BackupResult(shard, target, duration, baseline, probe.average(), probe.max());
+    }
+
+    /**
+     * Export a MySQL shard as INSERT statements from one consistent snapshot
+     * Rows are read in id-ordered chunks so no single query holds a large result in memory
+     */
+    private static void exportSnapshot(Shard shard, Path target) throws SQLException, IOException {
+        try (Connection conn = DatabaseConnection.getConnection(shard);
+             BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+            }
+
+            // Timestamps are rendered by the server so they restore exactly as stored
+            String sql = "SELECT id, title, author, isAvailable, norm_key,"
+                + " CAST(created_at AS CHAR), CAST(updated_at AS CHAR)"
+                + " FROM books WHERE id > ? ORDER BY id LIMIT ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int lastId = 0;
+                boolean more = true;
+                while (more) {
+                    stmt.setInt(1, lastId);
+                    stmt.setInt(2, EXPORT_CHUNK);
+                    int rows = 0;
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            lastId = rs.getInt(1);
+                            out.write("INSERT INTO books(id, title, author, isAvailable, norm_key, created_at, updated_at)"
+                                + " VALUES (" + lastId + ", " + literal(rs.getString(2)) + ", " + literal(rs.getString(3))
+                                + ", " + (rs.getBoolean(4) ? "TRUE" : "FALSE") + ", " + literal(rs.getString(5))
+                                + ", " + literal(rs.getString(6)) + ", " + literal(rs.getString(7)) + ");");
+                            out.newLine();
+                            rows++;
+                        }
+                    }
+                    more = rows == EXPORT_CHUNK;
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    /**
+     * Restore a shard from a backup file, replacing its current contents
+     * The shard is chosen from the file name prefix written by backupAll
+     * Running clients notice the restore through the change log and reload
+     * @param backupFile File previously written by backupAll
+     * @throws IOException if the file cannot be read
+     * @throws SQLException if the restore fails; MySQL restores are rolled back as a whole
+     */
+    public static void restore(File backupFile) throws IOException, SQLException {
+        Shard shard = shardForFile(backupFile.getName());
+        if (shard.isSqlite()) {
+            try (Connection conn = DatabaseConnection.getConnection(shard);
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("restore from " + quote(backupFile.toPath()));
+            }
+            // Snapshots taken by older versions are upgraded to the current schema
+            DatabaseConnection.initializeShard(shard);
+            // The restored log may have reached the same position as the replaced one,
+            // so tell running clients to reload explicitly
+            try (Connection conn = DatabaseConnection.getConnection(shard);
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO book_changes(book_id, change_type) VALUES (0, 'RELOAD')");
+            }
+            return;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection(shard);
+             BufferedReader in = Files.newBufferedReader(backupFile.toPath(), StandardCharsets.UTF_8)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM books");
+                String line;
+                int pending = 0;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    stmt.addBatch(line.endsWith(";") ? line.substring(0, line.length() - 1) : line);
+                    if (++pending == EXPORT_CHUNK) {
+                        stmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                stmt.executeBatch();
+                // Tell every running client to reload rather than replay individual changes
+                stmt.executeUpdate("INSERT INTO book_changes(book_id, change_type) VALUES (0, 'RELOAD')");
+                conn.commit();
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        // Exports taken before norm_key existed restore without keys
+        DatabaseConnection.initializeShard(shard);
+    }
+
+    private static Shard shardForFile(String fileName) throws SQLException {
+        for (Shard shard : DatabaseConnection.getShards()) {
+            if (isSnapshotOf(fileName, shard)) {
+                return shard;
+            }
+        }
+        throw new SQLException("No configured shard matches backup file " + fileName);
+    }
+
+    /**
+     * Match the whole shard-name part, so "north" does not claim "north-annex" snapshots
+     */
+    private static boolean isSnapshotOf(String fileName, Shard shard) {
+        Matcher matcher = SNAPSHOT_NAME.matcher(fileName);
+        return matcher.matches() && matcher.group(1).equals(shard.getName());
+    }
+
+    /**
+     * Keep only the newest backup.keep snapshots of a shard
+     */
+    private static void prune(Path dir, Shard shard) throws IOException {
+        int keep = Integer.parseInt(DatabaseConnection.getProperty("backup.keep", "7"));
+        File[] snapshots = dir.toFile().listFiles((d, name) -> isSnapshotOf(name, shard));
+        if (snapshots == null || snapshots.length <= keep) {
+            return;
+        }
+        // Timestamped names sort chronologically
+        Arrays.sort(snapshots, Comparator.comparing(File::getName).reversed());
+        for (int i = keep; i < snapshots.length; i++) {
+            Files.deleteIfExists(snapshots[i].toPath());
+        }
+    }
+
+    private static String quote(Path path) {
+        return "\"" + path.toAbsolutePath() + "\"";
+    }
+
+    private static String literal(String value) {
+        if (value == null) {
+            return "NULL";
+        }
+        return "'" + value.replace("\\", "\\\\").replace("'", "''") + "'";
+    }
+
+    /**
+     * Times a cheap indexed lookup on its own connection, standing in for foreground BookDAO calls
+     */
+    private static class LatencyProbe implements Runnable {
+        private final Shard shard;
+        private volatile boolean stopped = false;
+        private double total = 0;
+        private double max = 0;
+        private int samples = 0;
+
+        LatencyProbe(Shard shard) {
+            this.shard = shard;
+        }
+
+        double sampleBaseline() {
+            double sum = 0;
+            int count = 0;
+            for (int i = 0; i < 5; i++) {
+                double millis = lookup();
+                if (millis >= 0) {
+                    sum += millis;
+                    count++;
+                }
+            }
+            return count == 0 ? 0 : sum / count;
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                double millis = lookup();
+                if (millis >= 0) {
+                    synchronized (this) {
+                        total += millis;
+                        max = Math.max(max, millis);
+                        samples++;
+                    }
+                }
+                try {
+                    Thread.sleep(PROBE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        synchronized double average() {
+            return samples == 0 ? 0 : total / samples;
+        }
+
+        synchronized double max() {
+            return max;
+        }
+
+        /**
+         * @return Milliseconds for one primary-key lookup, or -1 if it failed
+         */
+        private double lookup() {
+            long start = System.nanoTime();
+            try (Connection conn = DatabaseConnection.getConnection(shard);
+                 PreparedStatement stmt = conn.prepareStatement("SELECT id, isAvailable FROM books WHERE id = ?")) {
+                stmt.setInt(1, shard.getMinId());
+                stmt.executeQuery().close();
+                return (System.nanoTime() - start) / 1_000_000.0;
+            } catch (SQLException e) {
+                return -1;
+            }
+        }
+    }
+}
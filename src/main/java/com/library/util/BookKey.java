@@ -0,0 +1,37 @@
+package com.library.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalized title/author key used to detect duplicate books
+ * "The Hobbit " by "J.R.R. Tolkien" and "the hobbit" by "J R R Tolkien" share one key
+ */
+public class BookKey {
+    /** Width of the norm_key column */
+    public static final int MAX_LENGTH = 512;
+
+    private BookKey() {
+    }
+
+    /**
+     * Build the key stored in the norm_key column
+     * @param title Book title as entered
+     * @param author Book author as entered
+     * @return Case-folded title and author with punctuation and whitespace collapsed
+     */
+    public static String of(String title, String author) {
+        String key = normalize(title) + "|" + normalize(author);
+        return key.length() > MAX_LENGTH ? key.substring(0, MAX_LENGTH) : key;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{Nd}]+", " ")
+                .trim();
+    }
+}
@@ -0,0 +1,103 @@
+package com.library.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for one shard's database
+ * After repeated connection failures the circuit opens and callers fail immediately
+ * instead of waiting out the driver's connect timeout; a background probe closes it again
+ * once the database answers
+ */
+public class CircuitBreaker {
+    private static final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "db-circuit-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Shard shard;
+    private final int failureThreshold;
+    private final long probeIntervalMillis;
+    private int consecutiveFailures = 0;
+    private boolean open = false;
+    private ScheduledFuture<?> probe;
+
+    /**
+     * @param shard Shard guarded by this breaker
+     * @param failureThreshold Consecutive failures before the circuit opens
+     * @param probeIntervalMillis Delay between background reconnection attempts while open
+     */
+    public CircuitBreaker(Shard shard, int failureThreshold, long probeIntervalMillis) {
+        this.shard = shard;
+        this.failureThreshold = failureThreshold;
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * Fail fast if the circuit is open
+     * @throws SQLTransientConnectionException if the database is known to be down
+     */
+    public synchronized void checkClosed() throws SQLTransientConnectionException {
+        if (open) {
+            throw new SQLTransientConnectionException(
+                "Database for shard " + shard.getName() + " is unavailable; retrying in the background", "08001");
+        }
+    }
+
+    /**
+     * @return true if calls are currently allowed through
+     */
+    public synchronized boolean isClosed() {
+        return !open;
+    }
+
+    /**
+     * Record a successful call, resetting the failure count
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Record a failed call, opening the circuit once the threshold is reached
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (!open && consecutiveFailures >= failureThreshold) {
+            open = true;
+            System.err.println("Circuit opened for shard " + shard.getName() + " after "
+                + consecutiveFailures + " failures");
+            probe = prober.scheduleWithFixedDelay(this::probe,
+                probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Try a bare connection; close the circuit if the database answers
+     */
+    private void probe() {
+        try (Connection conn = DatabaseConnection.openRawConnection(shard)) {
+            if (conn.isValid(1)) {
+                close();
+            }
+        } catch (SQLException e) {
+            // Still down; try again on the next tick
+        }
+    }
+
+    private synchronized void close() {
+        open = false;
+        consecutiveFailures = 0;
+        if (probe != null) {
+            probe.cancel(false);
+            probe = null;
+        }
+        System.out.println("Circuit closed for shard " + shard.getName());
+    }
+}
@@ -4,20 +4,40 @@ import javax.swing.JOptionPane;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Database connection utility class
  * Manages database connections and initialization
+ * The catalogue may be split across several branch shards, each owning an id range
  */
 public class DatabaseConnection {
     private static final Properties props = new Properties();
+    private static final String DEFAULT_SHARD = "default";
     private static String DB_URL;
     private static String DB_USER;
     private static String DB_PASSWORD;
+    private static List<Shard> shards = Collections.emptyList();
+    private static Shard homeShard;
+    private static long shardTimeoutMillis;
+    private static int connectTimeoutSeconds;
+    private static int queryTimeoutSeconds;
+    private static RetryPolicy retryPolicy = new RetryPolicy(1, 0, 0);
+    private static final Map<Shard, CircuitBreaker> breakers = new HashMap<>();
+    private static final Pattern INDEX_NAME = Pattern.compile("(?i)CREATE INDEX\\s+(?:IF NOT EXISTS\\s+)?(\\w+)");
     private static boolean isInitialized = false;
     
     static {
@@ -35,6 +55,9 @@ public class DatabaseConnection {
             
             props.load(input);
             DB_URL = props.getProperty("db.url");
+            loadShards();
+            loadResilienceSettings();
+            SlowQueryLog.configure(props);
             
             // Try environment variables first, then properties file
             DB_USER = System.getenv("DB_USER");
@@ -47,11 +70,13 @@ public class DatabaseConnection {
                 DB_PASSWORD = props.getProperty("db.password", "");
             }
 
-            // Load the appropriate JDBC driver
-            if (DB_URL.contains("mysql")) {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-            } else if (DB_URL.contains("sqlite")) {
-                Class.forName("org.sqlite.JDBC");
+            // Load the appropriate JDBC driver for every shard
+            for (Shard shard : shards) {
+                if (shard.getUrl().contains("mysql")) {
+                    Class.forName("com.mysql.cj.jdbc.Driver");
+                } else if (shard.isSqlite()) {
+                    Class.forName("org.sqlite.JDBC");
+                }
             }
             
             isInitialized = true;
@@ -59,11 +84,77 @@ public class DatabaseConnection {
             showError("Error loading database properties: " + e.getMessage());
         } catch (ClassNotFoundException e) {
             showError("Database driver not found: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            showError("Invalid database configuration: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read the shard list from db.shards, or fall back to a single shard on db.url
+     */
+    private static void loadShards() {
+        List<Shard> configured = new ArrayList<>();
+        String names = props.getProperty("db.shards", "").trim();
+        if (names.isEmpty()) {
+            configured.add(new Shard(DEFAULT_SHARD, DB_URL, 1, Integer.MAX_VALUE));
+        } else {
+            for (String name : names.split(",")) {
+                name = name.trim();
+                String url = props.getProperty("db.shard." + name + ".url");
+                String range = props.getProperty("db.shard." + name + ".ids");
+                if (url == null || range == null) {
+                    throw new IllegalArgumentException("shard '" + name + "' needs both .url and .ids");
+                }
+                String[] bounds = range.split("-");
+                if (bounds.length != 2) {
+                    throw new IllegalArgumentException("shard '" + name + "' ids must look like 1-999999");
+                }
+                Shard shard = new Shard(name, url.trim(),
+                    Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim()));
+                if (shard.getMinId() < 1 || shard.getMinId() > shard.getMaxId()) {
+                    throw new IllegalArgumentException("shard '" + name + "' has an empty or negative id range");
+                }
+                for (Shard other : configured) {
+                    if (shard.getMinId() <= other.getMaxId() && other.getMinId() <= shard.getMaxId()) {
+                        throw new IllegalArgumentException("shards '" + other.getName() + "' and '" + name
+                            + "' have overlapping id ranges");
+                    }
+                }
+                configured.add(shard);
+            }
         }
+        shards = Collections.unmodifiableList(configured);
+
+        String branch = props.getProperty("db.branch", shards.get(0).getName()).trim();
+        homeShard = shards.stream()
+            .filter(shard -> shard.getName().equals(branch))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("db.branch '" + branch + "' is not a configured shard"));
+
+        shardTimeoutMillis = Long.parseLong(props.getProperty("db.shard.timeoutMs", "5000").trim());
     }
 
     /**
-     * Get database connection
+     * Read timeouts, retry and circuit breaker settings and create one breaker per shard
+     */
+    private static void loadResilienceSettings() {
+        connectTimeoutSeconds = Integer.parseInt(props.getProperty("db.connectTimeoutSeconds", "5").trim());
+        queryTimeoutSeconds = Integer.parseInt(props.getProperty("db.queryTimeoutSeconds", "30").trim());
+        retryPolicy = new RetryPolicy(
+            Integer.parseInt(props.getProperty("db.retry.attempts", "3").trim()),
+            Long.parseLong(props.getProperty("db.retry.baseDelayMs", "100").trim()),
+            Long.parseLong(props.getProperty("db.retry.maxDelayMs", "2000").trim()));
+
+        int threshold = Integer.parseInt(props.getProperty("db.breaker.failureThreshold", "3").trim());
+        long probeMillis = Long.parseLong(props.getProperty("db.breaker.probeIntervalMs", "5000").trim());
+        for (Shard shard : shards) {
+            breakers.put(shard, new CircuitBreaker(shard, threshold, probeMillis));
+        }
+        DriverManager.setLoginTimeout(connectTimeoutSeconds);
+    }
+
+    /**
+     * Get a connection to this desk's home branch shard
      * @return Connection object
      * @throws SQLException if connection fails
      */
@@ -71,55 +162,435 @@ public class DatabaseConnection {
         if (!isInitialized) {
             throw new SQLException("Database configuration not loaded");
         }
+        return getConnection(homeShard);
+    }
+
+    /**
+     * Get a connection to a specific shard
+     * @param shard Shard to connect to
+     * @return Connection object
+     * @throws SQLException if connection fails
+     */
+    public static Connection getConnection(Shard shard) throws SQLException {
+        if (!isInitialized) {
+            throw new SQLException("Database configuration not loaded");
+        }
         
-        if (DB_URL.contains("sqlite")) {
-            return DriverManager.getConnection(DB_URL);
-        } else {
-            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        // Fail fast while the shard is known to be down, otherwise retry transient failures
+        CircuitBreaker breaker = getCircuitBreaker(shard);
+        for (int attempt = 1; ; attempt++) {
+            breaker.checkClosed();
+            try {
+                Connection conn = openRawConnection(shard);
+                breaker.recordSuccess();
+                return QueryInstrumentation.wrap(conn, shard);
+            } catch (SQLException e) {
+                breaker.recordFailure();
+                if (!RetryPolicy.isTransient(e) || attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+                try {
+                    retryPolicy.backoff(attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Work to run inside one transaction
+     * May run more than once, so it must not carry state over from a failed attempt
+     */
+    public interface TransactionWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Run work in a transaction on a shard, retrying the whole transaction on transient errors
+     * Deadlocks, lock wait timeouts and SQLite busy errors roll the transaction back, so it
+     * is safe to run again; failures to connect are already retried by getConnection
+     * @param shard Shard to run on
+     * @param work Statements to run before committing
+     * @return The work's result from the attempt that committed
+     * @throws SQLException if connecting fails or the last attempt fails
+     */
+    public static <T> T inTransaction(Shard shard, TransactionWork<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            SQLException failure;
+            try (Connection conn = getConnection(shard)) {
+                conn.setAutoCommit(false);
+                try {
+                    T result = work.run(conn);
+                    conn.commit();
+                    return result;
+                } catch (SQLException e) {
+                    rollbackQuietly(conn);
+                    failure = e;
+                }
+            }
+            if (!RetryPolicy.isTransient(failure) || attempt >= retryPolicy.getMaxAttempts()) {
+                throw failure;
+            }
+            try {
+                retryPolicy.backoff(attempt);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Roll back after a failure without masking it; a lost connection cannot roll back
+     */
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException ignored) {
+            // The server discards the transaction when the connection goes away
+        }
+    }
+
+    /**
+     * Open a plain driver connection with the configured connect timeout
+     * Bypasses the circuit breaker and instrumentation; used by the breaker's own probe
+     * @param shard Shard to connect to
+     * @return Unwrapped connection
+     * @throws SQLException if connection fails
+     */
+    static Connection openRawConnection(Shard shard) throws SQLException {
+        if (shard.isSqlite()) {
+            return DriverManager.getConnection(shard.getUrl());
+        }
+        Properties info = new Properties();
+        info.setProperty("user", DB_USER);
+        info.setProperty("password", DB_PASSWORD);
+        info.setProperty("connectTimeout", String.valueOf(connectTimeoutSeconds * 1000));
+        return DriverManager.getConnection(shard.getUrl(), info);
+    }
+
+    /**
+     * @param shard Shard to look up
+     * @return Circuit breaker guarding the shard
+     */
+    public static CircuitBreaker getCircuitBreaker(Shard shard) {
+        return breakers.get(shard);
+    }
+
+    /**
+     * @return true if no shard's circuit is currently open
+     */
+    public static boolean isAvailable() {
+        for (CircuitBreaker breaker : breakers.values()) {
+            if (!breaker.isClosed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Per-statement query timeout in seconds, or 0 for none
+     */
+    public static int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    /**
+     * Read a setting from database.properties
+     * @param key Property name
+     * @param defaultValue Value to use if the property is not set
+     * @return Trimmed property value
+     */
+    public static String getProperty(String key, String defaultValue) {
+        String value = props.getProperty(key, defaultValue);
+        return value == null ? null : value.trim();
+    }
+
+    /**
+     * @return All configured shards, in configuration order
+     */
+    public static List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return The shard new books are added to at this desk
+     */
+    public static Shard getHomeShard() {
+        return homeShard;
+    }
+
+    /**
+     * @return true if the catalogue is split across more than one shard
+     */
+    public static boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    /**
+     * Find the shard that owns a book id
+     * @param bookId Book ID
+     * @return Owning shard
+     * @throws SQLException if no shard's range covers the id
+     */
+    public static Shard getShardForId(int bookId) throws SQLException {
+        for (Shard shard : shards) {
+            if (shard.ownsId(bookId)) {
+                return shard;
+            }
         }
+        throw new SQLException("No shard owns book id " + bookId);
+    }
+
+    /**
+     * @return Maximum time to wait for any one shard during a fan-out read
+     */
+    public static long getShardTimeoutMillis() {
+        return shardTimeoutMillis;
     }
 
     /**
-     * Test database connection
-     * @return true if connection is successful, false otherwise
+     * Test the connection to every shard
+     * @return true if all shards are reachable, false otherwise
      */
     public static boolean testConnection() {
-        try (Connection conn = getConnection()) {
-            return conn != null && !conn.isClosed();
-        } catch (SQLException e) {
-            showError("Connection test failed: " + e.getMessage());
-            return false;
+        for (Shard shard : shards) {
+            try (Connection conn = getConnection(shard)) {
+                if (conn == null || conn.isClosed()) {
+                    return false;
+                }
+            } catch (SQLException e) {
+                showError("Connection test failed for shard " + shard.getName() + ": " + e.getMessage());
+                return false;
+            }
         }
+        return isInitialized;
     }
 
     /**
-     * Initialize database schema
+     * Initialize the database schema on every shard
+     * SQLite shards use init-sqlite.sql, MySQL shards use init.sql
      */
     public static void initializeDatabase() {
-        try (InputStream input = DatabaseConnection.class.getClassLoader()
-                .getResourceAsStream("init.sql")) {
-            
+        for (Shard shard : shards) {
+            try {
+                initializeShard(shard);
+                System.out.println("Database initialized successfully on shard " + shard.getName() + "!");
+            } catch (IOException e) {
+                showError("Error reading the schema script: " + e.getMessage());
+            } catch (SQLException e) {
+                showError("Error initializing shard " + shard.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Create or upgrade one shard's schema, e.g. at startup or after restoring an older backup
+     * Tables and columns come first; indexes are created one by one afterwards, so an index
+     * that cannot be built never leaves out a table that writes depend on
+     * @param shard Shard to initialize
+     * @throws IOException if the schema script cannot be read
+     * @throws SQLException if the schema cannot be created or upgraded
+     */
+    static void initializeShard(Shard shard) throws IOException, SQLException {
+        String script = shard.isSqlite() ? "init-sqlite.sql" : "init.sql";
+        String sql;
+        try (InputStream input = DatabaseConnection.class.getClassLoader().getResourceAsStream(script)) {
             if (input == null) {
-                showError("Could not find init.sql");
-                return;
+                throw new IOException("Could not find " + script);
             }
-            
-            String sql = new String(input.readAllBytes());
-            try (Connection conn = getConnection();
-                 Statement stmt = conn.createStatement()) {
-                
-                for (String statement : sql.split(";")) {
-                    if (!statement.trim().isEmpty()) {
-                        stmt.execute(statement);
+            sql = new String(input.readAllBytes());
+        }
+
+        try (Connection conn = getConnection(shard);
+             Statement stmt = conn.createStatement()) {
+            if (shard.isSqlite()) {
+                ensureSqliteAutoIncrement(conn);
+            }
+            List<String> indexes = new ArrayList<>();
+            for (String chunk : sql.split(";")) {
+                String statement = stripComments(chunk);
+                if (statement.isEmpty() || selectsDatabase(statement)) {
+                    continue;
+                }
+                if (statement.toUpperCase().startsWith("CREATE INDEX")) {
+                    indexes.add(statement);
+                } else {
+                    stmt.execute(statement);
+                }
+            }
+            seedIdSequence(conn, shard);
+            ensureNormKeys(conn);
+
+            // MySQL has no CREATE INDEX IF NOT EXISTS, so existing indexes are skipped by name
+            List<String> failures = new ArrayList<>();
+            for (String index : indexes) {
+                Matcher name = INDEX_NAME.matcher(index);
+                try {
+                    if (!name.find() || !hasIndex(conn, name.group(1))) {
+                        stmt.execute(index);
                     }
+                } catch (SQLException e) {
+                    failures.add(e.getMessage());
                 }
-                System.out.println("Database initialized successfully!");
             }
-            
-        } catch (IOException e) {
-            showError("Error reading init.sql: " + e.getMessage());
+            if (!failures.isEmpty()) {
+                throw new SQLException("Some indexes could not be created: " + String.join("; ", failures));
+            }
+        }
+    }
+
+    /**
+     * @return true if the books table already has an index with this name
+     */
+    private static boolean hasIndex(Connection conn, String indexName) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, "books", false, false)) {
+            while (rs.next()) {
+                if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The script's CREATE DATABASE and USE are for running it by hand; the application
+     * stays in the schema named by the shard's URL, which need not be library_db
+     */
+    private static boolean selectsDatabase(String statement) {
+        String upper = statement.toUpperCase();
+        return upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ");
+    }
+
+    /**
+     * Drop the -- comment lines the schema scripts put in front of statements
+     */
+    private static String stripComments(String chunk) {
+        StringBuilder statement = new StringBuilder();
+        for (String line : chunk.split("\\R")) {
+            if (!line.trim().startsWith("--")) {
+                statement.append(line).append('\n');
+            }
+        }
+        return statement.toString().trim();
+    }
+
+    /**
+     * Rebuild a SQLite books table created without AUTOINCREMENT
+     * Plain INTEGER PRIMARY KEY reuses the highest id after it is deleted, and its next id
+     * cannot be moved to the start of a shard's range
+     */
+    private static void ensureSqliteAutoIncrement(Connection conn) throws SQLException {
+        String ddl;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = 'books'")) {
+            if (!rs.next()) {
+                return; // Created by the init script
+            }
+            ddl = rs.getString(1);
+        }
+        if (ddl.toUpperCase().contains("AUTOINCREMENT")) {
+            return;
+        }
+
+        String rebuilt = ddl.replaceFirst("(?i)CREATE TABLE\\s+(IF NOT EXISTS\\s+)?\"?books\"?", "CREATE TABLE books_rebuild")
+            .replaceFirst("(?i)INTEGER\\s+PRIMARY\\s+KEY", "INTEGER PRIMARY KEY AUTOINCREMENT");
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(rebuilt);
+            stmt.execute("INSERT INTO books_rebuild SELECT * FROM books");
+            // Dropping the old table drops its indexes; the init script recreates them
+            stmt.execute("DROP TABLE books");
+            stmt.execute("ALTER TABLE books_rebuild RENAME TO books");
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Start a shard's id sequence at the bottom of its range
+     * The database then hands out ids atomically, and an id is never reused after a delete
+     * Existing higher ids are kept: neither database moves a sequence below its current value
+     */
+    private static void seedIdSequence(Connection conn, Shard shard) throws SQLException {
+        if (shard.getMinId() <= 1) {
+            return;
+        }
+        if (!shard.isSqlite()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE books AUTO_INCREMENT = " + shard.getMinId());
+            }
+            return;
+        }
+        try (PreparedStatement insert = conn.prepareStatement("INSERT INTO sqlite_sequence(name, seq) "
+                + "SELECT 'books', ? WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'books')");
+             PreparedStatement update = conn.prepareStatement(
+                 "UPDATE sqlite_sequence SET seq = ? WHERE name = 'books' AND seq < ?")) {
+            insert.setInt(1, shard.getMinId() - 1);
+            insert.executeUpdate();
+            update.setInt(1, shard.getMinId() - 1);
+            update.setInt(2, shard.getMinId() - 1);
+            update.executeUpdate();
+        }
+    }
+
+    /**
+     * Add, index and backfill the norm_key column on tables created before it existed
+     * Keys are computed in Java, so rows are filled in id-ordered chunks of one transaction each
+     * @param conn Connection to the shard
+     * @throws SQLException if the column, index or backfill cannot be written
+     */
+    static void ensureNormKeys(Connection conn) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, "books", "norm_key")) {
+                if (!rs.next()) {
+                    stmt.execute("ALTER TABLE books ADD COLUMN norm_key VARCHAR(" + BookKey.MAX_LENGTH
+                        + ") NOT NULL DEFAULT ''");
+                }
+            }
+            if (!hasIndex(conn, "idx_norm_key")) {
+                stmt.execute("CREATE INDEX idx_norm_key ON books (norm_key)");
+            }
+        }
+
+        String select = "SELECT id, title, author FROM books WHERE norm_key = '' AND id > ? ORDER BY id LIMIT 1000";
+        String update = "UPDATE books SET norm_key = ? WHERE id = ?";
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement query = conn.prepareStatement(select);
+             PreparedStatement stmt = conn.prepareStatement(update)) {
+            int lastId = 0;
+            int pending;
+            do {
+                pending = 0;
+                query.setInt(1, lastId);
+                try (ResultSet rs = query.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getInt(1);
+                        stmt.setString(1, BookKey.of(rs.getString(2), rs.getString(3)));
+                        stmt.setInt(2, lastId);
+                        stmt.addBatch();
+                        pending++;
+                    }
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } while (pending > 0);
         } catch (SQLException e) {
-            showError("Error initializing database: " + e.getMessage());
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
         }
     }
 
@@ -0,0 +1,322 @@
+package com.library.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps JDBC connections so every statement execution is timed
+ * Executions over the slow-query threshold are written to SlowQueryLog with their
+ * bind parameters and the database's plan for the statement.
+ * Queries are timed until their result set is exhausted or closed, since drivers such as
+ * sqlite-jdbc do most of a scan while stepping rows. Plans are captured on a background
+ * thread over a separate connection, so logging never runs EXPLAIN inside the caller's
+ * transaction or on the event thread.
+ * Statements also get the configured query timeout, and timeouts or lost connections
+ * are reported to the shard's circuit breaker.
+ */
+public class QueryInstrumentation {
+    private static final int EXPLAIN_QUEUE = 100;
+    private static final ExecutorService explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(EXPLAIN_QUEUE), task -> {
+            Thread thread = new Thread(task, "slow-query-explain");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private QueryInstrumentation() {
+    }
+
+    /**
+     * Wrap a connection so statements created from it are instrumented
+     * @param conn Connection to wrap
+     * @param shard Shard the connection belongs to, used for dialect and log context
+     * @return Instrumented connection, or the original if there is nothing to instrument
+     */
+    public static Connection wrap(Connection conn, Shard shard) {
+        if (!SlowQueryLog.isEnabled() && DatabaseConnection.getQueryTimeoutSeconds() <= 0) {
+            return conn;
+        }
+        return (Connection) Proxy.newProxyInstance(
+            QueryInstrumentation.class.getClassLoader(),
+            new Class<?>[]{Connection.class},
+            new ConnectionHandler(conn, shard));
+    }
+
+    /**
+     * Hands out instrumented statements; everything else goes straight to the driver
+     */
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final Shard shard;
+
+        ConnectionHandler(Connection target, Shard shard) {
+            this.target = target;
+            this.shard = shard;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(target, method, args);
+            String name = method.getName();
+            if (name.equals("prepareStatement")) {
+                return wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0]);
+            } else if (name.equals("prepareCall")) {
+                return wrapStatement(CallableStatement.class, (Statement) result, (String) args[0]);
+            } else if (name.equals("createStatement")) {
+                return wrapStatement(Statement.class, (Statement) result, null);
+            }
+            return result;
+        }
+
+        private Object wrapStatement(Class<?> type, Statement statement, String sql) throws SQLException {
+            if (DatabaseConnection.getQueryTimeoutSeconds() > 0) {
+                statement.setQueryTimeout(DatabaseConnection.getQueryTimeoutSeconds());
+            }
+            return Proxy.newProxyInstance(
+                QueryInstrumentation.class.getClassLoader(),
+                new Class<?>[]{type},
+                new StatementHandler(shard, statement, sql));
+        }
+    }
+
+    /**
+     * Records bind parameters and times execute* calls on one statement
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final Shard shard;
+        private final Statement target;
+        private final String preparedSql;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private int batchSize = 0;
+        private ResultSetHandler openResult;
+
+        StatementHandler(Shard shard, Statement target, String preparedSql) {
+            this.shard = shard;
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                    && preparedSql != null) {
+                parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            }
+
+            if (!name.startsWith("execute")) {
+                try {
+                    return invokeTarget(target, method, args);
+                } finally {
+                    if (name.equals("close")) {
+                        finishOpenResult(); // Closing the statement closes its result set
+                    }
+                }
+            }
+            finishOpenResult(); // Re-executing closes the previous result set
+
+            String sql = preparedSql != null ? preparedSql : (args != null && args.length > 0 ? (String) args[0] : null);
+            int batch = name.equals("executeBatch") ? batchSize : 0;
+            if (name.equals("executeBatch")) {
+                batchSize = 0;
+            }
+            long start = System.nanoTime();
+            boolean timedByResultSet = false;
+            try {
+                Object result = invokeTarget(target, method, args);
+                if (result instanceof ResultSet && sql != null && SlowQueryLog.isEnabled()) {
+                    timedByResultSet = true;
+                    openResult = new ResultSetHandler((ResultSet) result, shard, sql,
+                        new TreeMap<>(parameters), System.nanoTime() - start);
+                    return Proxy.newProxyInstance(
+                        QueryInstrumentation.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class},
+                        openResult);
+                }
+                return result;
+            } catch (SQLException e) {
+                reportFailure(shard, e);
+                throw e;
+            } finally {
+                if (!timedByResultSet && sql != null && SlowQueryLog.isEnabled()) {
+                    logIfSlow(shard, sql, System.nanoTime() - start, batch, new TreeMap<>(parameters));
+                }
+            }
+        }
+
+        private void finishOpenResult() {
+            if (openResult != null) {
+                openResult.finish();
+                openResult = null;
+            }
+        }
+    }
+
+    /**
+     * Adds the time spent stepping rows to the query's execution time
+     * The total is checked against the threshold once the rows are exhausted or closed
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final Shard shard;
+        private final String sql;
+        private final Map<Integer, Object> parameters;
+        private long elapsedNanos;
+        private boolean finished = false;
+
+        ResultSetHandler(ResultSet target, Shard shard, String sql, Map<Integer, Object> parameters,
+                         long elapsedNanos) {
+            this.target = target;
+            this.shard = shard;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                try {
+                    return invokeTarget(target, method, args);
+                } finally {
+                    finish();
+                }
+            }
+            if (!name.equals("next")) {
+                return invokeTarget(target, method, args);
+            }
+
+            long start = System.nanoTime();
+            Object result = null;
+            try {
+                result = invokeTarget(target, method, args);
+                return result;
+            } catch (SQLException e) {
+                reportFailure(shard, e);
+                throw e;
+            } finally {
+                elapsedNanos += System.nanoTime() - start;
+                if (!Boolean.TRUE.equals(result)) {
+                    finish(); // Exhausted or failed
+                }
+            }
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                logIfSlow(shard, sql, elapsedNanos, 0, parameters);
+            }
+        }
+    }
+
+    /**
+     * Report timeouts and lost connections to the shard's circuit breaker
+     */
+    private static void reportFailure(Shard shard, SQLException e) {
+        if (e instanceof SQLTimeoutException || e instanceof SQLRecoverableException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"))) {
+            DatabaseConnection.getCircuitBreaker(shard).recordFailure();
+        }
+    }
+
+    private static void logIfSlow(Shard shard, String sql, long elapsedNanos, int batch,
+                                  Map<Integer, Object> parameters) {
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        if (elapsedMillis < SlowQueryLog.getThresholdMillis()) {
+            return;
+        }
+        StringBuilder entry = new StringBuilder();
+        entry.append("[").append(shard.getName()).append("] ")
+            .append(elapsedMillis).append(" ms: ").append(sql.trim());
+        if (batch > 0) {
+            entry.append(System.lineSeparator()).append("  batch of ").append(batch)
+                .append(" (parameters shown are the last row's)");
+        }
+        if (!parameters.isEmpty()) {
+            entry.append(System.lineSeparator()).append("  parameters: ").append(parameters.values());
+        }
+        if (!SlowQueryLog.isExplainEnabled()) {
+            SlowQueryLog.record(entry.toString());
+            return;
+        }
+        try {
+            explainer.execute(() -> SlowQueryLog.record(
+                entry + System.lineSeparator() + explain(shard, sql, parameters)));
+        } catch (RejectedExecutionException e) {
+            SlowQueryLog.record(entry + System.lineSeparator() + "  plan: skipped, too many pending");
+        }
+    }
+
+    /**
+     * Capture the plan on a fresh raw connection so the EXPLAIN is neither instrumented
+     * nor run inside whatever transaction the slow statement belonged to
+     */
+    private static String explain(Shard shard, String sql, Map<Integer, Object> parameters) {
+        String verb = sql.trim().split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+        if (!verb.equals("SELECT") && !verb.equals("UPDATE") && !verb.equals("DELETE")) {
+            return "  plan: not captured for " + verb;
+        }
+
+        String prefix = shard.isSqlite() ? "EXPLAIN QUERY PLAN " : "EXPLAIN ";
+        StringBuilder plan = new StringBuilder("  plan:");
+        try (Connection connection = DatabaseConnection.openRawConnection(shard);
+             PreparedStatement stmt = connection.prepareStatement(prefix + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                stmt.setObject(parameter.getKey(), parameter.getValue());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    plan.append(System.lineSeparator()).append("    ");
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        if (i > 1) {
+                            plan.append(", ");
+                        }
+                        plan.append(meta.getColumnLabel(i)).append('=').append(rs.getObject(i));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plan.append(" unavailable (").append(e.getMessage()).append(')');
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Call through to the wrapped JDBC object, rethrowing the driver's own exception
+     */
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
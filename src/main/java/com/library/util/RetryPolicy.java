@@ -0,0 +1,61 @@
+package com.library.util;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for transient database errors
+ * Delays grow exponentially with full jitter so many desks do not retry in lockstep
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts Total attempts including the first
+     * @param baseDelayMillis Upper bound of the first retry delay
+     * @param maxDelayMillis Cap on any single retry delay
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Decide whether an error is worth retrying
+     * Connection failures, lock timeouts, deadlocks and SQLite busy errors are transient;
+     * syntax or constraint errors are not
+     * @param e Error raised by the driver
+     * @return true if the operation may succeed on retry
+     */
+    public static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        if (state != null && (state.startsWith("08") || state.startsWith("40"))) {
+            return true;
+        }
+        int code = e.getErrorCode();
+        // MySQL lock wait timeout / deadlock, SQLite SQLITE_BUSY / SQLITE_LOCKED
+        return code == 1205 || code == 1213 || code == 5 || code == 6;
+    }
+
+    /**
+     * Sleep before the given retry
+     * @param attempt Number of attempts made so far, starting at 1
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void backoff(int attempt) throws InterruptedException {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+}
@@ -0,0 +1,61 @@
+package com.library.util;
+
+/**
+ * One database holding a slice of the catalogue
+ * Each shard belongs to a branch and owns a contiguous range of book ids
+ */
+public class Shard {
+    private final String name;
+    private final String url;
+    private final int minId;
+    private final int maxId;
+
+    public Shard(String name, String url, int minId, int maxId) {
+        this.name = name;
+        this.url = url;
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getMinId() {
+        return minId;
+    }
+
+    public int getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * @return true if this shard is backed by SQLite rather than MySQL
+     */
+    public boolean isSqlite() {
+        return url.contains("sqlite");
+    }
+
+    /**
+     * Check whether a book id falls in this shard's range
+     * @param bookId Book ID
+     * @return true if the book lives on this shard
+     */
+    public boolean ownsId(int bookId) {
+        return bookId >= minId && bookId <= maxId;
+    }
+
+    @Override
+    public String toString() {
+        return "Shard{" +
+                "name='" + name + '\'' +
+                ", url='" + url + '\'' +
+                ", ids=" + minId + "-" + maxId +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package com.library.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Rotating local log of slow SQL statements and their query plans
+ * Configured from the db.slowQuery.* keys in database.properties
+ */
+public class SlowQueryLog {
+    private static final Logger logger = Logger.getLogger("com.library.slowquery");
+    private static long thresholdMillis = -1;
+    private static boolean explainEnabled = true;
+
+    private SlowQueryLog() {
+    }
+
+    /**
+     * Read slow-query settings and open the rotating log file
+     * A negative threshold disables instrumentation entirely
+     * @param props Database properties
+     */
+    static void configure(Properties props) {
+        thresholdMillis = Long.parseLong(props.getProperty("db.slowQuery.thresholdMs", "500").trim());
+        explainEnabled = Boolean.parseBoolean(props.getProperty("db.slowQuery.explain", "true").trim());
+        if (thresholdMillis < 0) {
+            return;
+        }
+
+        String pattern = props.getProperty("db.slowQuery.file", "logs/slow-queries-%g.log").trim();
+        int maxBytes = Integer.parseInt(props.getProperty("db.slowQuery.maxBytes", "1048576").trim());
+        int files = Integer.parseInt(props.getProperty("db.slowQuery.files", "5").trim());
+        try {
+            Path parent = Paths.get(pattern).toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            FileHandler handler = new FileHandler(pattern, maxBytes, files, true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return Instant.ofEpochMilli(record.getMillis()) + " " + record.getMessage()
+                        + System.lineSeparator();
+                }
+            });
+            logger.addHandler(handler);
+            logger.setUseParentHandlers(false);
+        } catch (IOException e) {
+            // Fall back to the console rather than losing the records
+            System.err.println("Could not open slow query log " + pattern + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if statements should be timed
+     */
+    public static boolean isEnabled() {
+        return thresholdMillis >= 0;
+    }
+
+    /**
+     * @return Statements taking at least this long are logged
+     */
+    public static long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    /**
+     * @return true if a query plan should be captured for slow statements
+     */
+    public static boolean isExplainEnabled() {
+        return explainEnabled;
+    }
+
+    /**
+     * Write one slow statement record
+     * @param entry Formatted record including timing, parameters and plan
+     */
+    static void record(String entry) {
+        logger.log(Level.WARNING, entry);
+    }
+}
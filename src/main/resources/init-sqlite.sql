@@ -0,0 +1,30 @@
+-- SQLite schema, equivalent to init.sql
+CREATE TABLE IF NOT EXISTS books (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255) NOT NULL,
+    isAvailable BOOLEAN DEFAULT TRUE,
+    norm_key VARCHAR(512) NOT NULL DEFAULT '',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Change log polled by every running client for live updates
+CREATE TABLE IF NOT EXISTS book_changes (
+    seq INTEGER PRIMARY KEY AUTOINCREMENT,
+    book_id INTEGER NOT NULL,
+    change_type VARCHAR(10) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create indexes for better performance
+CREATE INDEX IF NOT EXISTS idx_title ON books (title);
+CREATE INDEX IF NOT EXISTS idx_author ON books (author);
+CREATE INDEX IF NOT EXISTS idx_availability ON books (isAvailable);
+CREATE INDEX IF NOT EXISTS idx_availability_title ON books (isAvailable, title);
+CREATE INDEX IF NOT EXISTS idx_author_title ON books (author, title);
+-- Title and author pages are sorted with COLLATE NOCASE, which needs its own indexes
+CREATE INDEX IF NOT EXISTS idx_title_nocase ON books (title COLLATE NOCASE);
+CREATE INDEX IF NOT EXISTS idx_author_nocase ON books (author COLLATE NOCASE);
+CREATE INDEX IF NOT EXISTS idx_availability_title_nocase ON books (isAvailable, title COLLATE NOCASE);
+-- idx_norm_key is created by DatabaseConnection once older tables have the column
@@ -8,11 +8,23 @@ CREATE TABLE IF NOT EXISTS books (
     title VARCHAR(255) NOT NULL,
     author VARCHAR(255) NOT NULL,
     isAvailable BOOLEAN DEFAULT TRUE,
+    norm_key VARCHAR(512) NOT NULL DEFAULT '',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+-- Change log polled by every running client for live updates
+CREATE TABLE IF NOT EXISTS book_changes (
+    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+    book_id INT NOT NULL,
+    change_type VARCHAR(10) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
 -- Create indexes for better performance
-CREATE INDEX IF NOT EXISTS idx_title ON books (title);
-CREATE INDEX IF NOT EXISTS idx_author ON books (author);
-CREATE INDEX IF NOT EXISTS idx_availability ON books (isAvailable);
+CREATE INDEX idx_title ON books (title);
+CREATE INDEX idx_author ON books (author);
+CREATE INDEX idx_availability ON books (isAvailable);
+CREATE INDEX idx_availability_title ON books (isAvailable, title);
+CREATE INDEX idx_author_title ON books (author, title);
+-- idx_norm_key is created by DatabaseConnection once older tables have the column
@@ -0,0 +1,92 @@
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Latency benchmark for TrigramIndex.search on a synthetic catalogue
+ * Titles mix common English words with random made-up ones, so some queries have only
+ * common trigrams; run with: java -cp target/classes:target/test-classes com.library.search.TrigramIndexBenchmark [books]
+ */
+public class TrigramIndexBenchmark {
+    private static final String[] COMMON_WORDS = {
+        "the", "of", "and", "a", "in", "to", "history", "world", "love", "story", "war", "life",
+        "house", "night", "king", "city", "last", "time", "man", "woman", "secret", "new", "dark",
+        "garden", "river", "book", "great", "little", "game", "light", "shadow", "girl", "boy"
+    };
+    private static final String[] FIRST_NAMES = {
+        "John", "Mary", "James", "Anna", "Robert", "Linda", "David", "Susan", "Peter", "Emma"
+    };
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ra", "ten", "vor", "sel", "bri", "dun", "fa", "gor", "hel", "is",
+        "jun", "ko", "lem", "nar", "os", "pel", "qui", "ros", "sta", "tu", "ul", "ven", "wy", "zel"
+    };
+    private static final String[] QUERIES = {
+        "Tolkein", "the", "histroy", "the hobit", "love story", "history of the world", "dune herbert"
+    };
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        List<Book> catalogue = new ArrayList<>(count);
+        for (int id = 1; id <= count - 3; id++) {
+            catalogue.add(new Book(id, title(random), author(random), true));
+        }
+        // Known books get the highest ids, so shortcuts that favour low ids cannot find them by luck
+        catalogue.add(new Book(count - 2, "The Hobbit", "J.R.R. Tolkien", true));
+        catalogue.add(new Book(count - 1, "Dune", "Frank Herbert", true));
+        catalogue.add(new Book(count, "A History of the World", "Andrew Marr", true));
+
+        TrigramIndex index = new TrigramIndex();
+        long start = System.nanoTime();
+        index.addAll(catalogue);
+        System.out.printf("Indexed %d books in %d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            for (String query : QUERIES) {
+                index.search(query, 50);
+            }
+        }
+        for (String query : QUERIES) {
+            List<Book> results = null;
+            start = System.nanoTime();
+            for (int run = 0; run < RUNS; run++) {
+                results = index.search(query, 50);
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / RUNS;
+            String top = results.isEmpty() ? "-" : results.get(0).getTitle() + " / " + results.get(0).getAuthor();
+            System.out.printf("%-22s %8.1f ms  %3d results, top: %s%n", '"' + query + '"', millis, results.size(), top);
+        }
+    }
+
+    private static String title(Random random) {
+        int words = 1 + random.nextInt(5);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(random.nextBoolean() ? COMMON_WORDS[random.nextInt(COMMON_WORDS.length)] : madeUpWord(random));
+        }
+        return title.toString();
+    }
+
+    private static String author(Random random) {
+        String last = madeUpWord(random);
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+            + Character.toUpperCase(last.charAt(0)) + last.substring(1);
+    }
+
+    private static String madeUpWord(Random random) {
+        int syllables = 2 + random.nextInt(2);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+}